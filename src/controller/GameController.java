@@ -1,41 +1,53 @@
 package controller;
 
+import controller.solver.MoveGenerator;
 import model.Direction;
 import model.MapModel;
+import model.ModelListener;
+import model.MoveTree;
+import model.Timeline;
 import view.game.GamePanel;
 
-import java.util.Stack;
+import java.util.concurrent.CompletableFuture;
 
 public class GameController {
     private final GamePanel view;
     private final MapModel model;
-    private Stack<UndoState> undoStack = new Stack<>();
-
-    private static class UndoState {
-        int[][] matrix;
-        int[][] uniqueIds;
-        int steps;
-
-        UndoState(int[][] matrix, int[][] uniqueIds, int steps) {
-            this.matrix = matrix;
-            this.uniqueIds = uniqueIds;
-            this.steps = steps;
-        }
-    }
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    // 撤销/重做记录：保留所有分支的走法树，每隔一段深度存一个检查点（见 MoveTree）
+    private MoveTree history = new MoveTree();
+    // 当前分支的时间线，按步数定位节点
+    private final Timeline timeline = new Timeline();
+    // 根节点对应的步数，读档后步数不从 0 开始
+    private int baseSteps;
+    private boolean replaying; // 跳转时恢复检查点引起的通知不清空记录
+    // 走法记录变化后的回调（刷新进度条等），在走子、跳转的线程上直接调用，不分配对象
+    private Runnable historyListener = () -> { };
 
     public GameController(GamePanel view, MapModel model) {
         this.view = view;
         this.model = model;
         // 将自身设置到视图，以便面板内调用 doMove
         view.setController(this);
+        history.reset(model);
+        timeline.clear();
+        baseSteps = view.getSteps();
+        // 换关、读档等整盘替换后旧记录对不上，重新开始记录
+        model.addListener(new ModelListener() {
+            @Override
+            public void boardReplaced() {
+                if (!replaying) clearUndoStack();
+            }
+        });
     }
 
     /**
-     * 重新开始游戏，重置模型和界面
+     * 重新开始游戏；界面根据模型的移动通知只挪动变了位置的方块
      */
     public void restartGame() {
         model.reset();
-        view.reset();
+        clearUndoStack();
         System.out.println("Game restarted.");
     }
 
@@ -47,218 +59,186 @@ public class GameController {
      * 执行一次移动，返回是否成功
      */
     public boolean doMove(int row, int col, Direction direction) {
-        int currentId = getCompleteBoxId(row, col);
-        if (currentId == 0) return false;
-
-        int currentUniqueId = model.getUniqueId(row, col);
-        int currentWidth = getCurrentWidth(currentId);
-        int currentHeight = getCurrentHeight(currentId);
-
-        int newRow = row + direction.getRow();
-        int newCol = col + direction.getCol();
+        int steps = view.getSteps();
+        int move = tryMove(row * model.getWidth() + col, direction);
+        if (move < 0) return false;
+        baseSteps = steps - history.depth(history.current());
+        history.record(move, model); // 撤销后走新的一步时另开分支，原来的分支保留
+        historyListener.run();
+        return true;
+    }
 
-        // 校验边界与碰撞
-        if (!isMoveValid(newRow, newCol, currentWidth, currentHeight, currentUniqueId)) {
-            return false;
-        }
+    /*
+     * 模型在工作副本上原地找到方块、检查目标格并提交，不分配内存；
+     * 成功时返回这一步的走法（移动前的左上角 + 方向），否则返回 -1。
+     */
+    private int tryMove(int cell, Direction direction) {
+        int width = model.getWidth();
+        int origin = model.moveAndGetOrigin(cell / width, cell % width, direction);
+        if (origin < 0) return -1;
+        return MoveGenerator.encodeMove(origin - direction.getRow() * width - direction.getCol(), direction);
+    }
 
-        // 执行移动
-        if(performMove(row, col, newRow, newCol, currentWidth, currentHeight, currentUniqueId)) {
-            saveCurrentState(); // 保存状态
-            return true;
-        }
-        return false;
+    private boolean apply(int move) {
+        return tryMove(MoveGenerator.cellOf(move), MoveGenerator.directionOf(move)) >= 0;
     }
 
-    // 保存当前状态
-    private void saveCurrentState() {
-        int[][] matrix = model.getMatrix();
-        int[][] uniqueIds = model.getUniqueIdsMatrix();
-        int steps = view.getSteps();
-        undoStack.push(new UndoState(matrix, uniqueIds, steps));
+    // 把一步走回去：方块现在在原左上角 + 方向处，反方向走一格
+    private boolean unapply(int move) {
+        Direction direction = MoveGenerator.directionOf(move);
+        int cell = MoveGenerator.cellOf(move) + direction.getRow() * model.getWidth() + direction.getCol();
+        return tryMove(cell, DIRECTIONS[(direction.ordinal() + 2) & 3]) >= 0;
     }
 
-    // 执行撤销操作
+    // 执行撤销操作：走一次反向走法，不需要备份整盘；模型发出移动通知，界面只更新移动过的方块
     public void undo() {
-        if (undoStack.isEmpty()) return;
-
-        UndoState state = undoStack.pop();
-        // 原子化恢复操作
-        model.restoreState(state.matrix, state.uniqueIds); // 新增模型方法
-        view.setSteps(state.steps);
-        view.reset(); // 使用标准方法
+        undo(1);
     }
 
-    // 清空撤销栈
-    public void clearUndoStack() {
-        undoStack.clear();
+    // 重做：沿最近走过的分支向下
+    public void redo() {
+        redo(1);
     }
 
-    // 判断方块完整 ID，用于确认 2x1、1x2、2x2 大小
-    private int getCompleteBoxId(int row, int col) {
-        int baseId = model.getId(row, col);
-        if (baseId <= 0) return 0;
-
-        switch (baseId) {
-            case 2: // 横向 2x1
-                boolean right = (col + 1 < model.getWidth()) && model.getId(row, col + 1) == 2;
-                boolean left = (col - 1 >= 0) && model.getId(row, col - 1) == 2;
-                return (right || left) ? 2 : 0;
-
-            case 3: case 4: case 5: case 6: // 竖向 1x2
-                boolean down = (row + 1 < model.getHeight()) && model.getId(row + 1, col) == baseId;
-                boolean up = (row - 1 >= 0) && model.getId(row - 1, col) == baseId;
-                return (down || up) ? baseId : 0;
-
-            case 7: // 2x2
-                int startRow = row;
-                while (startRow > 0 && model.getId(startRow - 1, col) == 7) startRow--;
-                int startCol = col;
-                while (startCol > 0 && model.getId(row, startCol - 1) == 7) startCol--;
-                if (startRow + 1 >= model.getHeight() || startCol + 1 >= model.getWidth()) return 0;
-                boolean ok = model.getId(startRow, startCol) == 7
-                        && model.getId(startRow, startCol + 1) == 7
-                        && model.getId(startRow + 1, startCol) == 7
-                        && model.getId(startRow + 1, startCol + 1) == 7;
-                return ok ? 7 : 0;
+    public void undo(int count) {
+        jumpTo(history.ancestor(history.current(), count));
+    }
 
-            default: // 1x1
-                return baseId;
+    public void redo(int count) {
+        int node = history.current();
+        for (int i = 0; i < count && history.preferredChild(node) != MoveTree.NONE; i++) {
+            node = history.preferredChild(node);
         }
+        jumpTo(node);
     }
 
-    // 边界与撞块检测
-    private boolean isMoveValid(int newRow, int newCol,
-                                int width, int height,
-                                int uniqueId) {
-        if (newRow < 0 || newRow + height > model.getHeight()) return false;
-        if (newCol < 0 || newCol + width > model.getWidth()) return false;
-
-        for (int r = newRow; r < newRow + height; r++) {
-            for (int c = newCol; c < newCol + width; c++) {
-                int uid = model.getUniqueId(r, c);
-                if (uid != 0 && uid != uniqueId) {
-                    return false;
-                }
+    /**
+     * 跳到走法树中的任意节点。
+     * 比较两条路：经最近公共祖先逐步走过去，或从目标最近的检查点祖先恢复再向下重放，取步数少的一条，
+     * 后者最多重放一个检查点间隔。整个过程是模型的一个批次，界面只在结束时刷新一次。
+     */
+    public void jumpTo(int node) {
+        if (node < 0 || node >= history.size()) throw new IllegalArgumentException("No such node: " + node);
+        if (node == history.current()) return;
+        jumpTo(node, history.commonAncestor(history.current(), node));
+    }
+
+    // common 为当前节点与 node 的最近公共祖先，由调用方给出
+    private void jumpTo(int node, int common) {
+        int current = history.current();
+        int checkpoint = history.checkpointAncestor(node);
+        int walk = history.depth(current) - history.depth(common) + history.depth(node) - history.depth(common);
+        boolean viaCheckpoint = history.depth(node) - history.depth(checkpoint) < walk;
+        int from = viaCheckpoint ? checkpoint : common;
+        boolean ok = true;
+        replaying = true;
+        model.beginBatch();
+        try {
+            if (viaCheckpoint) {
+                model.restoreIds(history.checkpoint(checkpoint));
+            } else {
+                for (int n = current; n != common && ok; n = history.parent(n)) ok = unapply(history.move(n));
+            }
+            // 从 from 向下走到 node：先收集路径，再按从上到下的顺序重放
+            int length = history.depth(node) - history.depth(from);
+            int[] path = new int[length];
+            for (int n = node, i = length - 1; i >= 0; n = history.parent(n), i--) path[i] = n;
+            for (int i = 0; i < length && ok; i++) {
+                ok = apply(history.move(path[i]));
+                if (ok) history.storeCheckpoint(path[i], model);
             }
+        } finally {
+            model.endBatch();
+            replaying = false;
         }
-        return true;
+        if (!ok) {
+            // 棋盘已被其他途径改过（编辑等），记录与局面对不上
+            clearUndoStack();
+            return;
+        }
+        history.setCurrent(node);
+        view.setSteps(baseSteps + history.depth(node));
+        historyListener.run();
     }
 
-    // 执行移动动作，包括清空旧位置和设置新位置
-    private boolean performMove(int oldRow, int oldCol,
-                                int newRow, int newCol,
-                                int width, int height,
-                                int uniqueId) {
-        BackupData backup = backupArea(oldRow, oldCol, width, height);
-        if (!clearOldPosition(oldRow, oldCol, width, height, uniqueId)) {
-            restoreBackup(oldRow, oldCol, backup);
-            return false;
-        }
-        if (!setNewPosition(newRow, newCol, width, height, backup.idBackup[0][0], uniqueId)) {
-            restoreBackup(oldRow, oldCol, backup);
-            return false;
-        }
-        return true;
+    /**
+     * 回放时跳到当前时间线（根 → 当前节点 → 沿重做方向到底）上的第 step 步，超出范围时取最近的一端。
+     * 按下标直接找到节点，再从最近的检查点重放，代价不超过一个检查点间隔。
+     * 两端都在时间线上，较浅的一个就是公共祖先，不必沿父指针查找。
+     */
+    public void seek(int step) {
+        timeline.sync(history);
+        int node = timeline.nodeAt(Math.max(0, Math.min(step, timeline.length())));
+        int current = history.current();
+        if (node == current) return;
+        jumpTo(node, history.depth(node) < history.depth(current) ? node : current);
     }
 
-    private BackupData backupArea(int row, int col, int width, int height) {
-        int[][] ids = new int[height][width];
-        int[][] uids = new int[height][width];
-        for (int i = 0; i < height; i++) {
-            for (int j = 0; j < width; j++) {
-                int r = row + i;
-                int c = col + j;
-                ids[i][j] = model.getId(r, c);
-                uids[i][j] = model.getUniqueId(r, c);
-            }
-        }
-        return new BackupData(ids, uids);
+    /** 当前时间线的总步数（相对于记录起点）。 */
+    public int timelineLength() {
+        timeline.sync(history);
+        return timeline.length();
     }
 
-    private static class BackupData {
-        final int[][] idBackup;
-        final int[][] uniqueIdBackup;
+    /** 当前局面在时间线上的位置（相对于记录起点）。 */
+    public int timelinePosition() {
+        return history.depth(history.current());
+    }
 
-        BackupData(int[][] ids, int[][] uids) {
-            this.idBackup = ids;
-            this.uniqueIdBackup = uids;
-        }
+    public boolean canUndo() {
+        return history.current() != MoveTree.ROOT;
     }
 
-    private boolean clearOldPosition(int row, int col,
-                                     int width, int height,
-                                     int uniqueId) {
-        for (int i = 0; i < height; i++) {
-            for (int j = 0; j < width; j++) {
-                int r = row + i;
-                int c = col + j;
-                if (model.getUniqueId(r, c) == uniqueId) {
-                    model.setIdSafely(r, c, 0);
-                    model.setUniqueId(r, c, 0);
-                }
-            }
-        }
-        return true;
+    public boolean canRedo() {
+        return history.preferredChild(history.current()) != MoveTree.NONE;
     }
 
-    private boolean setNewPosition(int row, int col,
-                                   int width, int height,
-                                   int id, int uniqueId) {
-        for (int i = 0; i < height; i++) {
-            for (int j = 0; j < width; j++) {
-                int r = row + i;
-                int c = col + j;
-                model.setIdSafely(r, c, id);
-                model.setUniqueId(r, c, uniqueId);
-            }
-        }
-        return true;
+    /** 走子、撤销、跳转、清空或恢复记录之后调用 listener；null 表示不再通知。 */
+    public void setHistoryListener(Runnable listener) {
+        historyListener = listener != null ? listener : () -> { };
     }
 
-    private void restoreBackup(int row, int col, BackupData bak) {
-        for (int i = 0; i < bak.idBackup.length; i++) {
-            for (int j = 0; j < bak.idBackup[0].length; j++) {
-                int r = row + i;
-                int c = col + j;
-                model.setId(r, c, bak.idBackup[i][j]);
-                model.setUniqueId(r, c, bak.uniqueIdBackup[i][j]);
-            }
-        }
+    /** 当前的走法树，存档时使用；不应在外部修改。 */
+    public MoveTree getHistory() {
+        return history;
     }
 
-    private int getCurrentWidth(int id) {
-        return (id == 2 || id == 7) ? 2 : 1;
+    /**
+     * 读档后恢复走法树：tree 的当前节点应与模型的局面一致，steps 为当前节点对应的步数。
+     * 先补齐各检查点，之后跳转都不超过一个检查点间隔；树的根局面与模型尺寸不符或有走不通的步时丢弃，
+     * 从当前局面重新记录。
+     */
+    public void restoreHistory(MoveTree tree, int steps) {
+        int cells = model.getWidth() * model.getHeight();
+        if (tree == null || tree.checkpoint(MoveTree.ROOT).length != cells
+                || !tree.fillCheckpoints(model.getWidth())) {
+            clearUndoStack();
+            return;
+        }
+        history = tree;
+        timeline.clear();
+        baseSteps = steps - history.depth(history.current());
+        historyListener.run();
     }
 
-    private int getCurrentHeight(int id) {
-        return (id >= 3 && id <= 7) ? 2 : 1;
+    // 清空撤销和重做记录，以当前局面为起点
+    public void clearUndoStack() {
+        history.reset(model);
+        timeline.clear();
+        baseSteps = view.getSteps();
+        historyListener.run();
     }
 
     public boolean simulateMove(int row, int col, Direction dir) {
-        int currentId = getCompleteBoxId(row, col);
-        if (currentId == 0) return false;
-
-        int currentUniqueId = model.getUniqueId(row, col);
-        int currentWidth = getCurrentWidth(currentId);
-        int currentHeight = getCurrentHeight(currentId);
-
-        int newRow = row + dir.getRow();
-        int newCol = col + dir.getCol();
-
-        if (!isMoveValid(newRow, newCol, currentWidth, currentHeight, currentUniqueId)) {
-            return false;
-        }
-
-        BackupData backup = backupArea(row, col, currentWidth, currentHeight);
-        boolean success = performMove(row, col, newRow, newCol, currentWidth, currentHeight, currentUniqueId);
-        if (!success) {
-            restoreBackup(row, col, backup);
-        }
-        return success;
+        return tryMove(row * model.getWidth() + col, dir) >= 0;
     }
 
     public Direction getHint() {
         return HintSearcher.findNextMove(this.model);
     }
+
+    /** 异步获取提示，搜索不占用事件线程；重复点击会合并到同一次搜索。 */
+    public CompletableFuture<Direction> requestHint() {
+        return HintSearcher.requestNextMove(this.model);
+    }
 }
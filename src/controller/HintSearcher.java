@@ -1,136 +1,347 @@
 package controller;
 
+import controller.solver.BeamSolver;
+import controller.solver.BfsSolver;
+import controller.solver.DistanceTable;
+import controller.solver.GridBoard;
+import controller.solver.LevelGraph;
+import controller.solver.MctsSolver;
+import controller.solver.MoveGenerator;
+import controller.solver.PathShortener;
+import controller.solver.SolverResult;
+import controller.solver.SolverStrategy;
+import model.Board;
+import model.BoardCodec;
 import model.Direction;
+import model.Goal;
 import model.MapModel;
-import java.util.*;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class HintSearcher {
-    // 定义移动可能性封装类
-    private static class PossibleMove {
-        final int row;
-        final int col;
-        final Direction direction;
-
-        PossibleMove(int row, int col, Direction direction) {
-            this.row = row;
-            this.col = col;
-            this.direction = direction;
-        }
+    // 大规模搜索时把前沿和已访问表放到堆外，避免 GC 停顿拖慢界面；也可用 -Dklotski.solver.offheap=true 开启
+    private static volatile boolean offHeap = Boolean.getBoolean("klotski.solver.offheap");
+    // 提示使用的求解策略名称，见 SolverStrategy 的登记列表，另有限时的 "mcts"；超过 21 格的大棋盘只支持 "beam"，其余一律用 MCTS。
+    // 也可用 -Dklotski.solver.strategy=greedy 指定。
+    // 最优策略（默认的 bfs 等）在有距离表或走法图时直接查表，结果相同；选了近似策略时仍按该策略搜索，
+    // 查表只用来提前判定无解
+    private static volatile String strategyName = System.getProperty("klotski.solver.strategy", "bfs");
+    // 非空时 BFS 把每次搜索的轨迹写到该目录，供 SearchTraceReader 分析；-Dklotski.solver.trace=目录
+    private static volatile String traceDir = System.getProperty("klotski.solver.trace");
+
+    // 正在进行中的提示请求：同一局面的并发请求共享同一个 future，只跑一次搜索
+    private static final ConcurrentHashMap<RequestKey, CompletableFuture<Direction>> inFlight = new ConcurrentHashMap<>();
+    private static final ExecutorService executor = createExecutor();
+    // 每个模型上一次搜索得到的解路径；玩家沿路径走或只偏离一步时直接在其上重新定根，不必重新搜索。
+    // 按模型对象区分，模型不再使用后随之回收
+    private static final Map<MapModel, SolutionLine> lastLines = Collections.synchronizedMap(new WeakHashMap<>());
+
+    public static void setOffHeap(boolean enabled) {
+        offHeap = enabled;
     }
 
-    // 状态节点类
-    private static class Node {
-        final MapModel state;
-        final Direction direction;
-        final Node parent;
-        final int steps;
+    public static boolean isOffHeap() {
+        return offHeap;
+    }
 
-        Node(MapModel s, Direction d, Node p, int steps) {
-            this.state = deepCopyModel(s);
-            this.direction = d;
-            this.parent = p;
-            this.steps = steps;
-        }
+    /** 设置搜索轨迹目录，null 关闭记录。 */
+    public static void setTraceDirectory(String dir) {
+        traceDir = dir;
+    }
+
+    public static void setStrategy(String name) {
+        strategyName = name;
+        lastLines.clear();
     }
 
     public static Direction findNextMove(MapModel initialModel) {
         if (initialModel == null) throw new IllegalArgumentException("Model cannot be null");
+        return findNextMove(initialModel, initialModel.getGoal());
+    }
 
-        Queue<Node> queue = new LinkedList<>();
-        Set<String> visited = new HashSet<>();
-
-        queue.add(new Node(initialModel, null, null, 0));
-        visited.add(getStateHash(initialModel));
+    public static Direction findNextMove(MapModel initialModel, Goal goal) {
+        if (initialModel == null) throw new IllegalArgumentException("Model cannot be null");
+        return search(initialModel, GridBoard.of(initialModel.getMatrix()), goal);
+    }
 
-        while (!queue.isEmpty()) {
-            Node current = queue.poll();
+    /**
+     * 异步请求提示。局面在调用线程上立即快照，之后模型的变化不影响结果；
+     * 若同一局面已有搜索在进行，直接复用它的结果。
+     */
+    public static CompletableFuture<Direction> requestNextMove(MapModel model) {
+        if (model == null) throw new IllegalArgumentException("Model cannot be null");
+        Goal goal = model.getGoal();
+        GridBoard board = GridBoard.of(model.getMatrix());
+        RequestKey key = new RequestKey(board, goal);
 
-            if (isWinningState(current.state)) {
-                return getFirstMove(current);
+        CompletableFuture<Direction> created = new CompletableFuture<>();
+        CompletableFuture<Direction> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            return existing.copy();
+        }
+        executor.execute(() -> {
+            try {
+                created.complete(search(model, board, goal));
+            } catch (Throwable t) {
+                created.completeExceptionally(t);
+            } finally {
+                inFlight.remove(key, created);
             }
+        });
+        // 返回副本，单个调用方取消不会影响其他共享者
+        return created.copy();
+    }
 
-            for (PossibleMove move : findAllPossibleMoves(current.state)) {
-                MapModel newModel = deepCopyModel(current.state);
-                if (tryMove(newModel, move.row, move.col, move.direction)) {
-                    String hash = getStateHash(newModel);
-                    if (!visited.contains(hash)) {
-                        visited.add(hash);
-                        queue.add(new Node(newModel, move.direction, current, current.steps + 1));
-                    }
-                }
+    private static Direction search(MapModel owner, GridBoard start, Goal goal) {
+        if (!start.isPackable()) return searchLarge(start, goal);
+        int width = start.getWidth();
+        int height = start.getHeight();
+        long board = start.pack();
+        boolean exact = isExactStrategy();
+        // 随游戏发布了距离表的关卡直接查表，不必搜索；表和走法图都是精确的，无解时不再搜索同一个分量
+        DistanceTable table = DistanceTable.forBoard(width, height, goal, board);
+        if (table != null) {
+            if (!table.isSolvable(board)) return null;
+            if (exact) {
+                int move = table.bestMove(board);
+                return move == BfsSolver.NO_MOVE ? null : MoveGenerator.directionOf(move);
             }
         }
-        return null;
-    }
-
-    // 核心方法：查找所有合法移动
-    private static List<PossibleMove> findAllPossibleMoves(MapModel model) {
-        List<PossibleMove> moves = new ArrayList<>();
-        int[][] matrix = model.getMatrix();
-
-        for (int row = 0; row < matrix.length; row++) {
-            for (int col = 0; col < matrix[0].length; col++) {
-                if (matrix[row][col] != 0) {
-                    // 使用final局部变量解决lambda作用域问题
-                    final int currentRow = row;
-                    final int currentCol = col;
-                    checkDirections(matrix, currentRow, currentCol).stream()
-                            .map(dir -> new PossibleMove(currentRow, currentCol, dir))
-                            .forEach(moves::add);
-                }
+        // 打开过的关卡有整张走法图，提示只是一次查表
+        LevelGraph graph = LevelGraph.forBoard(width, height, goal, board);
+        if (graph != null) {
+            if (!graph.isSolvable(board)) return null;
+            if (exact) {
+                int move = graph.bestMove(board);
+                return move == BfsSolver.NO_MOVE ? null : MoveGenerator.directionOf(move);
             }
         }
-        return moves;
+        long goalMask = goal.mask(width);
+        long goalValue = goal.value(width);
+        SolutionLine line = lastLines.get(owner);
+        if (line != null) {
+            int move = line.moveFrom(width, height, goalMask, goalValue, board);
+            if (move != BfsSolver.NO_MOVE) return MoveGenerator.directionOf(move);
+        }
+        // 跳到与上次路径无关的局面（读档、换关、偏离路径不止一步）时才完整搜索
+        if ("mcts".equals(strategyName)) {
+            // 限时模式：不给整条路径，只按模拟统计给出第一步
+            return new MctsSolver().hint(start, goal).getDirection();
+        }
+        Board packed = Board.of(width, height, board);
+        SolverResult result = strategy().solve(packed, goal);
+        // 非最优策略的绕路解先压短，提示和后续沿路径的回答都用更短的走法；
+        // 提示要立即给出，只扫一遍、窗口固定，反复扫并加倍窗口的完整压短留给离线对比
+        result = PathShortener.singlePass(width, height, PathShortener.DEFAULT_WINDOW,
+                PathShortener.DEFAULT_NODE_BUDGET).shorten(packed, result);
+        if (result.isSolved()) {
+            lastLines.put(owner, new SolutionLine(width, height, goalMask, goalValue, board, result.getPath(),
+                    result.isOptimal()));
+        }
+        return result.getFirstDirection();
     }
 
-    // 方向验证逻辑
-    private static List<Direction> checkDirections(int[][] matrix, int row, int col) {
-        List<Direction> validDirections = new ArrayList<>();
+    /*
+     * 超过 21 格的自定义大棋盘装不进 long，精确搜索和查表都用不上：
+     * 选了束搜索时在逐格表示上跑束搜索，否则在时间预算内用 MCTS 给出第一步。
+     */
+    private static Direction searchLarge(GridBoard start, Goal goal) {
+        if ("beam".equals(strategyName)) return new BeamSolver().solve(start, goal).getFirstDirection();
+        return new MctsSolver().hint(start, goal).getDirection();
+    }
 
-        for (Direction dir : Direction.values()) {
-            int newRow = row + dir.getRow();
-            int newCol = col + dir.getCol();
+    /** 在后台为当前关卡建好走法图，之后的提示和查询都不必等待。 */
+    public static CompletableFuture<Void> preload(MapModel model) {
+        if (model == null) throw new IllegalArgumentException("Model cannot be null");
+        // 大棋盘建不了走法图，提示时直接走近似搜索
+        if (!BoardCodec.fits(model.getWidth(), model.getHeight())) return CompletableFuture.completedFuture(null);
+        Goal goal = model.getGoal();
+        int width = model.getWidth();
+        int height = model.getHeight();
+        long board = BoardCodec.pack(model.getMatrix());
+        return CompletableFuture.runAsync(() -> LevelGraph.forBoard(width, height, goal, board), executor);
+    }
 
-            if (isValidPosition(matrix, newRow, newCol) && matrix[newRow][newCol] == 0) {
-                validDirections.add(dir);
-            }
+    /** 当前局面是否还能走到目标。 */
+    public static boolean isSolvable(MapModel model) {
+        return distanceToGoal(model) != LevelGraph.UNREACHABLE;
+    }
+
+    /** 当前局面到目标的最少步数；无解时返回 {@link LevelGraph#UNREACHABLE}。 */
+    public static int distanceToGoal(MapModel model) {
+        if (model == null) throw new IllegalArgumentException("Model cannot be null");
+        checkSize(model);
+        long board = BoardCodec.pack(model.getMatrix());
+        LevelGraph graph = LevelGraph.forBoard(model.getWidth(), model.getHeight(), model.getGoal(), board);
+        if (graph != null) return graph.distance(board);
+        return solveLength(model.getWidth(), model.getHeight(), board, model.getGoal());
+    }
+
+    /** 把 (row, col) 处左上角的方块朝 direction 移一格，是否更接近目标。 */
+    public static boolean isGoodMove(MapModel model, int row, int col, Direction direction) {
+        if (model == null) throw new IllegalArgumentException("Model cannot be null");
+        checkSize(model);
+        int width = model.getWidth();
+        long board = BoardCodec.pack(model.getMatrix());
+        int move = MoveGenerator.encodeMove(row * width + col, direction);
+        LevelGraph graph = LevelGraph.forBoard(width, model.getHeight(), model.getGoal(), board);
+        if (graph != null) return graph.isGoodMove(board, move);
+        // 图太大时退回两次搜索比较步数
+        long next = new MoveGenerator(width, model.getHeight()).apply(board, move);
+        if (next == 0) return false;
+        int before = solveLength(width, model.getHeight(), board, model.getGoal());
+        int after = solveLength(width, model.getHeight(), next, model.getGoal());
+        return before != LevelGraph.UNREACHABLE && after == before - 1;
+    }
+
+    private static int solveLength(int width, int height, long board, Goal goal) {
+        SolverResult result = new BfsSolver(offHeap).solve(Board.of(width, height, board), goal);
+        return result.isSolved() ? result.getLength() : LevelGraph.UNREACHABLE;
+    }
+
+    /** 丢弃 model 保留的解路径，例如切换关卡规则之后。 */
+    public static void forgetLastSearch(MapModel model) {
+        lastLines.remove(model);
+    }
+
+    // 默认 BFS（可选堆外）；指定的策略未登记时也回到 BFS
+    private static SolverStrategy strategy() {
+        String name = strategyName;
+        if (!"bfs".equals(name)) {
+            SolverStrategy found = SolverStrategy.find(name);
+            if (found != null) return found;
         }
-        return validDirections;
+        return new BfsSolver(offHeap, traceFile());
     }
 
-    private static boolean isValidPosition(int[][] matrix, int row, int col) {
-        return row >= 0 && row < matrix.length &&
-                col >= 0 && col < matrix[0].length;
+    // 选的策略是否给出最短解；未登记的名字按 BFS 处理
+    private static boolean isExactStrategy() {
+        String name = strategyName;
+        if ("bfs".equals(name)) return true;
+        if ("mcts".equals(name)) return false;
+        SolverStrategy found = SolverStrategy.find(name);
+        return found == null || found.isOptimal();
     }
 
-    private static boolean tryMove(MapModel model, int row, int col, Direction dir) {
-        GameController tempController = new GameController(null, model);
-        return tempController.simulateMove(row, col, dir);
+    private static Path traceFile() {
+        String dir = traceDir;
+        if (dir == null || dir.isEmpty()) return null;
+        return Paths.get(dir, "hint-" + System.currentTimeMillis() + "-" + System.nanoTime() % 1000000 + ".ktr");
     }
 
-    private static Direction getFirstMove(Node node) {
-        while (node.parent != null && node.parent.parent != null) {
-            node = node.parent;
+    private static void checkSize(MapModel model) {
+        if (!BoardCodec.fits(model.getWidth(), model.getHeight())) {
+            throw new IllegalArgumentException("Board too large for exact search");
         }
-        return node.direction;
     }
 
-    private static String getStateHash(MapModel model) {
-        return Arrays.deepToString(model.getMatrix());
+    // JDK 21+ 使用虚拟线程；更早的运行时退化为守护线程的缓存线程池
+    private static ExecutorService createExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "hint-search");
+                t.setDaemon(true);
+                return t;
+            });
+        }
     }
 
-    private static MapModel deepCopyModel(MapModel original) {
-        int[][] originalMatrix = original.getMatrix();
-        int[][] newMatrix = new int[originalMatrix.length][];
-        for (int i = 0; i < originalMatrix.length; i++) {
-            newMatrix[i] = Arrays.copyOf(originalMatrix[i], originalMatrix[i].length);
+    // 一条解路径：states[i] 处应走 moves[i]，states 比 moves 多一个终点；index 记下每个局面在路径上的位置
+    private static final class SolutionLine {
+        final int width;
+        final int height;
+        final long goalMask;
+        final long goalValue;
+        final long[] states;
+        final int[] moves;
+        final boolean optimal;
+        final MoveGenerator generator;
+        final Map<Long, Integer> index = new HashMap<>();
+
+        SolutionLine(int width, int height, long goalMask, long goalValue, long start, int[] moves, boolean optimal) {
+            this.width = width;
+            this.height = height;
+            this.goalMask = goalMask;
+            this.goalValue = goalValue;
+            this.moves = moves;
+            this.optimal = optimal;
+            this.states = new long[moves.length + 1];
+            this.generator = new MoveGenerator(width, height);
+            states[0] = start;
+            for (int i = 0; i < moves.length; i++) {
+                states[i + 1] = generator.apply(states[i], moves[i]);
+            }
+            // 路径绕回同一局面时记最后一次出现，直接跳过中间的绕圈
+            for (int i = 0; i < states.length; i++) index.put(states[i], i);
+        }
+
+        /*
+         * board 在路径上时返回该处的下一步：沿剩余路径一定能到达目标，但只有策略本身给出最短路径时剩余部分才是最短的。
+         * board 偏离路径一步（玩家没按提示走）时，返回回到路径的那一步，有多个时选路径上最靠近终点的局面。
+         * 最短路径上相邻局面的步数至多差 1：board 的邻居在路径上的最小位置为 lo 时，board 至少还要 L - lo - 1 步，
+         * 所以只有能回到 lo + 2 处才保证仍是最短解，否则返回 NO_MOVE 让调用方重新搜索
+         * （例如玩家走的一步本身也是最短解，只是不在这条路径上，这时不应让他退回去）。
+         * 非最优策略的路径本来就不是最短的，回到最靠近终点的局面即可。
+         */
+        int moveFrom(int width, int height, long goalMask, long goalValue, long board) {
+            if (width != this.width || height != this.height
+                    || goalMask != this.goalMask || goalValue != this.goalValue) {
+                return BfsSolver.NO_MOVE;
+            }
+            Integer at = index.get(board);
+            if (at != null) return at < moves.length ? moves[at] : BfsSolver.NO_MOVE;
+            long[] next = new long[generator.maxMoves()];
+            int[] nextMoves = new int[generator.maxMoves()];
+            int n = generator.expand(board, next, nextMoves);
+            int best = -1;
+            int lowest = Integer.MAX_VALUE;
+            int move = BfsSolver.NO_MOVE;
+            for (int i = 0; i < n; i++) {
+                Integer position = index.get(next[i]);
+                if (position == null) continue;
+                lowest = Math.min(lowest, position);
+                if (position > best) {
+                    best = position;
+                    move = nextMoves[i];
+                }
+            }
+            if (optimal && best < lowest + 2) return BfsSolver.NO_MOVE;
+            return move;
         }
-        return new MapModel(newMatrix);
     }
 
-    private static boolean isWinningState(MapModel model) {
-        int[][] m = model.getMatrix();
-        return m[3][1] == 7 && m[3][2] == 7 &&
-                m[4][1] == 7 && m[4][2] == 7;
+    // 请求键：局面（含尺寸）+ 目标
+    private static final class RequestKey {
+        final GridBoard board;
+        final Goal goal;
+
+        RequestKey(GridBoard board, Goal goal) {
+            this.board = board;
+            this.goal = goal;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof RequestKey)) return false;
+            RequestKey k = (RequestKey) o;
+            return board.equals(k.board) && goal.equals(k.goal);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * board.hashCode() + goal.hashCode();
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,78 @@
+package controller.solver;
+
+import model.Board;
+import model.Goal;
+
+/**
+ * A* 搜索（有信息的最优求解）。估价默认为曼哈顿距离；
+ * 若模式数据库目录中有与该局面匹配的文件，则惰性加载并与曼哈顿距离取最大值。
+ */
+public final class AStarSolver implements SolverStrategy {
+    // 优先级 = f * 1024 + (1023 - g)：f 相同时优先展开 g 更大的节点，并可从优先级还原 g
+    private static final int G_BITS = 10;
+    private static final int G_LIMIT = (1 << G_BITS) - 1;
+
+    @Override
+    public String name() {
+        return "astar";
+    }
+
+    @Override
+    public boolean isOptimal() {
+        return true;
+    }
+
+    @Override
+    public SolverResult solve(Board board, Goal goal) {
+        return solve(board, goal, heuristicFor(board, goal));
+    }
+
+    /** 使用指定估价求解；估价必须可采纳才能保证最短。 */
+    public SolverResult solve(Board board, Goal goal, Heuristic heuristic) {
+        long startTime = System.nanoTime();
+        MoveGenerator generator = new MoveGenerator(board.getWidth(), board.getHeight());
+        long goalMask = goal.mask(board.getWidth());
+        long goalValue = goal.value(board.getWidth());
+        long start = board.getCells();
+
+        long[] boards = new long[generator.maxMoves()];
+        int[] moves = new int[generator.maxMoves()];
+        long expanded = 0;
+        BoardHeap open = new BoardHeap();
+        // 值 = g << 8 | 进入该状态的那一步
+        LongIntMap best = new LongIntMap();
+        best.put(start, SearchPaths.ROOT);
+        open.add(start, priority(heuristic.estimate(start), 0));
+        while (!open.isEmpty()) {
+            int g = G_LIMIT - (open.peekPriority() & G_LIMIT);
+            long current = open.poll();
+            if ((best.get(current) >>> 8) < g) continue; // 过期的堆条目
+            if ((current & goalMask) == goalValue) {
+                int[] path = SearchPaths.reconstruct(generator, b -> best.get(b) & 0xFF, current);
+                return new SolverResult(name(), true, true, path, expanded, System.nanoTime() - startTime);
+            }
+            expanded++;
+            if (g + 1 > G_LIMIT) continue;
+            int n = generator.expand(current, boards, moves);
+            for (int i = 0; i < n; i++) {
+                long next = boards[i];
+                int entry = best.get(next);
+                if (entry != LongIntMap.ABSENT && (entry >>> 8) <= g + 1) continue;
+                best.put(next, (g + 1) << 8 | moves[i]);
+                open.add(next, priority(g + 1 + heuristic.estimate(next), g + 1));
+            }
+        }
+        return SolverResult.unsolved(name(), expanded, System.nanoTime() - startTime);
+    }
+
+    static Heuristic heuristicFor(Board board, Goal goal) {
+        Heuristic manhattan = new ManhattanHeuristic(goal, board.getWidth(), board.getHeight());
+        PatternDatabase database = PatternDatabase.lazyLoad(board.getWidth(), board.getHeight(), goal,
+                PatternDatabase.DEFAULT_PATTERN, board.getCells());
+        return database != null ? new PatternHeuristic(database, manhattan) : manhattan;
+    }
+
+    private static int priority(int f, int g) {
+        return f << G_BITS | (G_LIMIT - g);
+    }
+}
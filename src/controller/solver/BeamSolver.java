@@ -0,0 +1,120 @@
+package controller.solver;
+
+import model.Board;
+import model.Goal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 束搜索：逐层展开，每层只保留估价最小的若干局面。
+ * 内存和耗时随束宽线性增长，与状态空间大小无关，适合大棋盘；解不保证最短，也可能找不到解。
+ * 在逐格表示（{@link GridBoard}）上进行，超出压缩棋盘的大棋盘也能求解。
+ * 默认估价为离线训练的 {@link LinearHeuristic}，没有权重文件时退回曼哈顿距离。
+ */
+public final class BeamSolver implements SolverStrategy {
+    public static final int DEFAULT_BEAM_WIDTH = 2048;
+
+    private final int beamWidth;
+    private final Heuristic.Factory heuristics;
+
+    public BeamSolver() {
+        this(DEFAULT_BEAM_WIDTH, LinearHeuristic.learnedOr(ManhattanHeuristic.FACTORY));
+    }
+
+    public BeamSolver(int beamWidth, Heuristic.Factory heuristics) {
+        if (beamWidth < 1) throw new IllegalArgumentException("Beam width must be positive");
+        this.beamWidth = beamWidth;
+        this.heuristics = heuristics;
+    }
+
+    @Override
+    public String name() {
+        return "beam";
+    }
+
+    @Override
+    public boolean isOptimal() {
+        return false;
+    }
+
+    @Override
+    public SolverResult solve(Board board, Goal goal) {
+        return solve(GridBoard.of(board), goal);
+    }
+
+    /** 在逐格表示上求解，棋盘尺寸不受压缩棋盘的限制。 */
+    public SolverResult solve(GridBoard board, Goal goal) {
+        long startTime = System.nanoTime();
+        GridMoveGenerator generator = new GridMoveGenerator(board.getWidth(), board.getHeight());
+        Heuristic heuristic = heuristics.create(board.getWidth(), board.getHeight(), goal);
+        if (board.isReached(goal)) {
+            return new SolverResult(name(), true, false, new int[0], 0, System.nanoTime() - startTime);
+        }
+
+        GridBoard[] boards = new GridBoard[generator.maxMoves()];
+        int[] moves = new int[generator.maxMoves()];
+        long expanded = 0;
+        Set<GridBoard> visited = new HashSet<>();
+        visited.add(board);
+        // 每层保留的局面在上一层的下标和走来的一步，找到目标后沿下标回溯出路径
+        List<int[]> layerParents = new ArrayList<>();
+        List<int[]> layerMoves = new ArrayList<>();
+        GridBoard[] layer = {board};
+        while (layer.length > 0) {
+            int capacity = layer.length * generator.maxMoves();
+            GridBoard[] children = new GridBoard[capacity];
+            int[] parents = new int[capacity];
+            int[] childMoves = new int[capacity];
+            // 候选 = 估价 << 32 | 下标，排序后取前 beamWidth 个
+            long[] candidates = new long[capacity];
+            int n = 0;
+            for (int l = 0; l < layer.length; l++) {
+                expanded++;
+                int count = generator.expand(layer[l], boards, moves);
+                for (int i = 0; i < count; i++) {
+                    GridBoard next = boards[i];
+                    if (!visited.add(next)) continue;
+                    if (next.isReached(goal)) {
+                        int[] path = reconstruct(layerParents, layerMoves, l, moves[i]);
+                        return new SolverResult(name(), true, false, path, expanded, System.nanoTime() - startTime);
+                    }
+                    children[n] = next;
+                    parents[n] = l;
+                    childMoves[n] = moves[i];
+                    candidates[n] = (long) heuristic.estimate(next.cells()) << 32 | n;
+                    n++;
+                }
+            }
+            Arrays.sort(candidates, 0, n);
+            int kept = Math.min(n, beamWidth);
+            layer = new GridBoard[kept];
+            int[] keptParents = new int[kept];
+            int[] keptMoves = new int[kept];
+            for (int i = 0; i < kept; i++) {
+                int index = (int) candidates[i];
+                layer[i] = children[index];
+                keptParents[i] = parents[index];
+                keptMoves[i] = childMoves[index];
+            }
+            layerParents.add(keptParents);
+            layerMoves.add(keptMoves);
+        }
+        return SolverResult.unsolved(name(), expanded, System.nanoTime() - startTime);
+    }
+
+    // 最后一步从当前层的第 index 个局面走出，逐层向上回溯
+    private static int[] reconstruct(List<int[]> layerParents, List<int[]> layerMoves, int index, int lastMove) {
+        int depth = layerParents.size();
+        int[] path = new int[depth + 1];
+        path[depth] = lastMove;
+        for (int k = depth - 1; k >= 0; k--) {
+            path[k] = layerMoves.get(k)[index];
+            index = layerParents.get(k)[index];
+        }
+        return path;
+    }
+}
@@ -0,0 +1,104 @@
+package controller.solver;
+
+import model.Board;
+import model.Goal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+
+/**
+ * 基于压缩棋盘的广度优先搜索，给出最短解。
+ * 每个已访问状态只额外记录一个字节：进入该状态的那一步，
+ * 找到目标后据此逆推出整条路径。前沿和已访问表可选放在堆外。
+ * 指定轨迹文件时把每条生成的边写入 {@link SearchTrace}。
+ */
+public final class BfsSolver implements SolverStrategy {
+    public static final int NO_MOVE = -1;
+
+    private final boolean offHeap;
+    private final Path traceFile;
+
+    public BfsSolver() {
+        this(false);
+    }
+
+    public BfsSolver(boolean offHeap) {
+        this(offHeap, null);
+    }
+
+    /** traceFile 为 null 时不记录轨迹。 */
+    public BfsSolver(boolean offHeap, Path traceFile) {
+        this.offHeap = offHeap;
+        this.traceFile = traceFile;
+    }
+
+    @Override
+    public String name() {
+        return offHeap ? "bfs-offheap" : "bfs";
+    }
+
+    @Override
+    public boolean isOptimal() {
+        return true;
+    }
+
+    @Override
+    public SolverResult solve(Board board, Goal goal) {
+        long startTime = System.nanoTime();
+        MoveGenerator generator = new MoveGenerator(board.getWidth(), board.getHeight());
+        long goalMask = goal.mask(board.getWidth());
+        long goalValue = goal.value(board.getWidth());
+        long start = board.getCells();
+        if ((start & goalMask) == goalValue) {
+            return new SolverResult(name(), true, true, new int[0], 0, System.nanoTime() - startTime);
+        }
+
+        long[] boards = new long[generator.maxMoves()];
+        int[] moves = new int[generator.maxMoves()];
+        long expanded = 0;
+        // 队列按层先进先出，数完一层的个数就进入下一层
+        int depth = 0;
+        long layerRemaining = 1;
+        long nextLayer = 0;
+        // try-with-resources 保证搜索结束时立即释放堆外内存
+        try (FrontierQueue queue = FrontierQueue.create(offHeap);
+             VisitedTable visited = VisitedTable.create(offHeap);
+             SearchTrace trace = openTrace(board)) {
+            queue.add(start);
+            visited.putIfAbsent(start, SearchPaths.ROOT);
+            while (!queue.isEmpty()) {
+                if (layerRemaining == 0) {
+                    depth++;
+                    layerRemaining = nextLayer;
+                    nextLayer = 0;
+                }
+                layerRemaining--;
+                long current = queue.poll();
+                expanded++;
+                if (trace != null) trace.beginExpansion();
+                int n = generator.expand(current, boards, moves);
+                for (int i = 0; i < n; i++) {
+                    long next = boards[i];
+                    boolean added = visited.putIfAbsent(next, moves[i]);
+                    if (trace != null) trace.record(next, current, moves[i], depth, !added);
+                    if (!added) continue;
+                    if ((next & goalMask) == goalValue) {
+                        int[] path = SearchPaths.reconstruct(generator, visited, next);
+                        return new SolverResult(name(), true, true, path, expanded, System.nanoTime() - startTime);
+                    }
+                    queue.add(next);
+                    nextLayer++;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return SolverResult.unsolved(name(), expanded, System.nanoTime() - startTime);
+    }
+
+    private SearchTrace openTrace(Board board) throws IOException {
+        if (traceFile == null) return null;
+        return SearchTrace.open(traceFile, board.getWidth(), board.getHeight(), board.getCells());
+    }
+}
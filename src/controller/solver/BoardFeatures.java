@@ -0,0 +1,132 @@
+package controller.solver;
+
+import model.Goal;
+
+import java.util.Arrays;
+
+/**
+ * 学习估价使用的局面特征。特征只依赖目标方块与目标区域的相对位置以及周围的空格，
+ * 与棋盘尺寸无关，因此在小棋盘上训练的权重也能用于更大的棋盘。
+ * 特征在逐格表示（见 {@link GridBoard}）上计算，压缩棋盘先展开到内部缓冲区，所以一个实例不能跨线程共享。
+ */
+final class BoardFeatures {
+    /** 特征个数，第 0 个恒为 1（偏置）。 */
+    static final int COUNT = 14;
+
+    private final int width;
+    private final int height;
+    private final int cells;
+    private final Goal goal;
+    private final byte[] scratch;
+
+    BoardFeatures(Goal goal, int width, int height) {
+        this.goal = goal;
+        this.width = width;
+        this.height = height;
+        this.cells = width * height;
+        this.scratch = new byte[cells];
+    }
+
+    void extract(long board, double[] out) {
+        GridBoard.unpack(board, scratch);
+        extract(scratch, out);
+    }
+
+    /**
+     * 依次为：偏置、行距、列距、目标区内的阻挡格、目标区内的空格、
+     * 目标方块到目标区之间的阻挡格、紧邻目标方块的空格、空格到目标方块的最近距离、
+     * 相邻空格对数、通道内四类方块各自的格数、总距离乘以通道阻挡格。
+     */
+    void extract(byte[] board, double[] out) {
+        Arrays.fill(out, 0);
+        out[0] = 1;
+        for (int t = 0; t < goal.targetCount(); t++) {
+            int id = goal.targetId(t);
+            int tr = goal.targetRow(t);
+            int tc = goal.targetCol(t);
+            int th = goal.targetHeight(t);
+            int tw = goal.targetWidth(t);
+            int origin = nearestOrigin(board, id, tr, tc);
+            if (origin < 0) continue;
+            int pr = origin / width;
+            int pc = origin % width;
+            int rowDistance = Math.abs(pr - tr);
+            int colDistance = Math.abs(pc - tc);
+            out[1] += rowDistance;
+            out[2] += colDistance;
+            for (int r = tr; r < tr + th; r++) {
+                for (int c = tc; c < tc + tw; c++) {
+                    int v = board[r * width + c];
+                    if (v == 0) out[4]++;
+                    else if (v != id) out[3]++;
+                }
+            }
+            // 通道：目标方块当前位置与目标区共同的外接矩形
+            int top = Math.min(pr, tr);
+            int left = Math.min(pc, tc);
+            int bottom = Math.min(height, Math.max(pr, tr) + th);
+            int right = Math.min(width, Math.max(pc, tc) + tw);
+            int blocking = 0;
+            for (int r = top; r < bottom; r++) {
+                for (int c = left; c < right; c++) {
+                    int v = board[r * width + c];
+                    if (v == 0 || v == id) continue;
+                    blocking++;
+                    out[9 + kindOf(v)]++;
+                }
+            }
+            out[5] += blocking;
+            out[13] += (rowDistance + colDistance) * blocking;
+            addBlankFeatures(board, id, pr, pc, th, tw, out);
+        }
+        for (int cell = 0; cell < cells; cell++) {
+            if (board[cell] != 0) continue;
+            int c = cell % width;
+            if (c + 1 < width && board[cell + 1] == 0) out[8]++;
+            if (cell + width < cells && board[cell + width] == 0) out[8]++;
+        }
+    }
+
+    // 离目标区最近的同 ID 方块的左上角
+    private int nearestOrigin(byte[] board, int id, int tr, int tc) {
+        int best = -1;
+        int bestDistance = Integer.MAX_VALUE;
+        for (int cell = 0; cell < cells; cell++) {
+            if (board[cell] != id) continue;
+            int r = cell / width;
+            int c = cell % width;
+            boolean topLeft = (c == 0 || board[cell - 1] != id)
+                    && (r == 0 || board[cell - width] != id);
+            if (!topLeft) continue;
+            int d = Math.abs(r - tr) + Math.abs(c - tc);
+            if (d < bestDistance) {
+                bestDistance = d;
+                best = cell;
+            }
+        }
+        return best;
+    }
+
+    private void addBlankFeatures(byte[] board, int id, int pr, int pc, int ph, int pw, double[] out) {
+        int nearest = Integer.MAX_VALUE;
+        for (int cell = 0; cell < cells; cell++) {
+            if (board[cell] != 0) continue;
+            int r = cell / width;
+            int c = cell % width;
+            int dr = r < pr ? pr - r : r >= pr + ph ? r - (pr + ph - 1) : 0;
+            int dc = c < pc ? pc - c : c >= pc + pw ? c - (pc + pw - 1) : 0;
+            int d = dr + dc;
+            if (d == 1) out[6]++;
+            if (d < nearest) nearest = d;
+        }
+        if (nearest != Integer.MAX_VALUE) out[7] += nearest;
+    }
+
+    // 0 兵，1 横将，2 竖将，3 其余大块
+    private static int kindOf(int id) {
+        if (id == 1) return 0;
+        if (id == 2) return 1;
+        if (id <= 6) return 2;
+        return 3;
+    }
+}
@@ -0,0 +1,59 @@
+package controller.solver;
+
+/**
+ * 以整数优先级排序的压缩棋盘最小堆，基于并行的原始数组，不装箱。
+ */
+final class BoardHeap {
+    private long[] boards = new long[1 << 10];
+    private int[] priorities = new int[1 << 10];
+    private int size;
+
+    void add(long board, int priority) {
+        if (size == boards.length) {
+            boards = java.util.Arrays.copyOf(boards, size * 2);
+            priorities = java.util.Arrays.copyOf(priorities, size * 2);
+        }
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (priorities[parent] <= priority) break;
+            boards[i] = boards[parent];
+            priorities[i] = priorities[parent];
+            i = parent;
+        }
+        boards[i] = board;
+        priorities[i] = priority;
+    }
+
+    int peekPriority() {
+        return priorities[0];
+    }
+
+    long poll() {
+        long top = boards[0];
+        size--;
+        long board = boards[size];
+        int priority = priorities[size];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) break;
+            if (child + 1 < size && priorities[child + 1] < priorities[child]) child++;
+            if (priorities[child] >= priority) break;
+            boards[i] = boards[child];
+            priorities[i] = priorities[child];
+            i = child;
+        }
+        boards[i] = board;
+        priorities[i] = priority;
+        return top;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+}
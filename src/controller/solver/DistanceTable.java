@@ -0,0 +1,295 @@
+package controller.solver;
+
+import model.BoardCodec;
+import model.Goal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 2 位距离表：以 {@link PositionRanker} 的排名为下标，每个摆放存“到目标的步数 mod 3”，
+ * 3 表示无法到达目标。相邻局面的距离至多差 1，所以 mod 3 足以判断每个邻居是更近、相同还是更远，
+ * 沿着“更近”的邻居一直走就得到最短解（与回溯式残局库的做法相同）。
+ * 表按 {@link PositionRanker#canonical} 编号后的摆放建立，同形状方块互换不另占位置，
+ * 方块形状相同的关卡共用一张表；查表时先把棋盘换成同样的编号。
+ * <p>
+ * 文件格式（大端）：magic, version, width, height, goalMask, goalValue, 种类表长度, 种类表, 位数组长度, 位数组。
+ */
+public final class DistanceTable {
+    public static final int UNREACHABLE = 3;
+
+    private static final int MAGIC = 0x4B324454; // "K2DT"
+    private static final int VERSION = 2;
+    private static final String RESOURCE_DIR = "/resources/tables/";
+    private static final String CHECKPOINT_JOB = "distance-table";
+    private static final ConcurrentHashMap<String, Optional<DistanceTable>> LOADED = new ConcurrentHashMap<>();
+
+    private final PositionRanker ranker;
+    private final MoveGenerator generator;
+    private final long goalMask;
+    private final long goalValue;
+    private final int keepIds;
+    private final long[] bits;
+
+    private DistanceTable(PositionRanker ranker, long goalMask, long goalValue, long[] bits) {
+        this.ranker = ranker;
+        this.generator = new MoveGenerator(ranker.getWidth(), ranker.getHeight());
+        this.goalMask = goalMask;
+        this.goalValue = goalValue;
+        this.keepIds = targetIds(ranker.getWidth() * ranker.getHeight(), goalMask, goalValue);
+        this.bits = bits;
+    }
+
+    // 目标区域里的 ID，编号时保持不变
+    private static int targetIds(int cells, long goalMask, long goalValue) {
+        int ids = 0;
+        for (int cell = 0; cell < cells; cell++) {
+            if (BoardCodec.get(goalMask, cell) != 0) ids |= 1 << BoardCodec.get(goalValue, cell);
+        }
+        return ids;
+    }
+
+    /** 对排名器覆盖的全部摆放，从所有目标局面出发逐层 BFS 建表；排名器须按编号后的棋盘创建（见 {@link #rankerFor}）。 */
+    public static DistanceTable build(PositionRanker ranker, Goal goal) {
+        try {
+            return build(ranker, goal, null, 0);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // 不写检查点时不会发生
+        }
+    }
+
+    /**
+     * 带检查点的建表：checkpoint 文件已存在且属于同一张表时从中继续，
+     * 之后每隔 intervalMillis 在层与层之间写一次检查点，完成后删除。checkpoint 为 null 时不写。
+     */
+    public static DistanceTable build(PositionRanker ranker, Goal goal, Path checkpoint, long intervalMillis)
+            throws IOException {
+        int width = ranker.getWidth();
+        long goalMask = goal.mask(width);
+        long goalValue = goal.value(width);
+        if (checkpoint != null && Files.exists(checkpoint)) {
+            SearchCheckpoint saved = SearchCheckpoint.read(checkpoint);
+            if (saved.matches(CHECKPOINT_JOB, checkpointParams(ranker, goalMask, goalValue))) {
+                return resume(saved, checkpoint, intervalMillis);
+            }
+        }
+        long size = ranker.size();
+        if (size > Integer.MAX_VALUE) throw new IllegalArgumentException("Too many positions: " + size);
+        long[] bits = new long[(int) ((size + 31) / 32)];
+        Arrays.fill(bits, -1L); // 全部初始化为 3
+        DistanceTable table = new DistanceTable(ranker, goalMask, goalValue, bits);
+
+        int[] layer = new int[1024];
+        int layerSize = 0;
+        for (int r = 0; r < size; r++) {
+            if ((ranker.unrank(r) & goalMask) == goalValue) {
+                table.set(r, 0);
+                if (layerSize == layer.length) layer = Arrays.copyOf(layer, layerSize * 2);
+                layer[layerSize++] = r;
+            }
+        }
+        table.expandLayers(layer, layerSize, 0, checkpoint, intervalMillis);
+        return table;
+    }
+
+    /** 从检查点文件继续建表，参数全部取自检查点本身。 */
+    public static DistanceTable resume(Path checkpoint, long intervalMillis) throws IOException {
+        SearchCheckpoint saved = SearchCheckpoint.read(checkpoint);
+        if (!saved.getJob().equals(CHECKPOINT_JOB)) {
+            throw new IOException("Checkpoint is not a distance table build: " + saved.getJob());
+        }
+        return resume(saved, checkpoint, intervalMillis);
+    }
+
+    private static DistanceTable resume(SearchCheckpoint saved, Path checkpoint, long intervalMillis)
+            throws IOException {
+        long[] params = saved.getParams();
+        int[] kinds = new int[params.length - 4];
+        for (int i = 0; i < kinds.length; i++) kinds[i] = (int) params[4 + i];
+        PositionRanker ranker = PositionRanker.fromKinds((int) params[0], (int) params[1], kinds);
+        DistanceTable table = new DistanceTable(ranker, params[2], params[3], saved.getVisited());
+        long[] frontier = saved.getFrontier();
+        int[] layer = new int[Math.max(1, frontier.length)];
+        for (int i = 0; i < frontier.length; i++) layer[i] = (int) frontier[i];
+        table.expandLayers(layer, frontier.length, saved.getLayer(), checkpoint, intervalMillis);
+        return table;
+    }
+
+    // 逐层扩展直到前沿为空；层与层之间按间隔写检查点
+    private void expandLayers(int[] layer, int layerSize, int depth, Path checkpoint, long intervalMillis)
+            throws IOException {
+        long[] next = new long[generator.maxMoves()];
+        long lastCheckpoint = System.currentTimeMillis();
+        while (layerSize > 0) {
+            if (checkpoint != null && System.currentTimeMillis() - lastCheckpoint >= intervalMillis) {
+                long[] frontier = new long[layerSize];
+                for (int i = 0; i < layerSize; i++) frontier[i] = layer[i];
+                new SearchCheckpoint(CHECKPOINT_JOB, checkpointParams(ranker, goalMask, goalValue),
+                        depth, bits, frontier).write(checkpoint);
+                lastCheckpoint = System.currentTimeMillis();
+            }
+            int value = (depth + 1) % 3;
+            int[] nextLayer = new int[Math.max(1024, layerSize)];
+            int nextSize = 0;
+            for (int i = 0; i < layerSize; i++) {
+                int n = generator.expand(ranker.unrank(layer[i]), next, null);
+                for (int j = 0; j < n; j++) {
+                    int r = (int) ranker.rank(next[j]);
+                    if (get(r) != UNREACHABLE) continue;
+                    set(r, value);
+                    if (nextSize == nextLayer.length) nextLayer = Arrays.copyOf(nextLayer, nextSize * 2);
+                    nextLayer[nextSize++] = r;
+                }
+            }
+            layer = nextLayer;
+            layerSize = nextSize;
+            depth++;
+        }
+        if (checkpoint != null) Files.deleteIfExists(checkpoint);
+    }
+
+    private static long[] checkpointParams(PositionRanker ranker, long goalMask, long goalValue) {
+        int[] kinds = ranker.kinds();
+        long[] params = new long[4 + kinds.length];
+        params[0] = ranker.getWidth();
+        params[1] = ranker.getHeight();
+        params[2] = goalMask;
+        params[3] = goalValue;
+        for (int i = 0; i < kinds.length; i++) params[4 + i] = kinds[i];
+        return params;
+    }
+
+    public PositionRanker getRanker() {
+        return ranker;
+    }
+
+    /** 与 board 的关卡对应的排名器，覆盖编号后的全部摆放。 */
+    public static PositionRanker rankerFor(int width, int height, Goal goal, long board) {
+        return PositionRanker.forBoard(width, height, PositionRanker.canonical(width, height, board, goal));
+    }
+
+    /** 到目标的步数 mod 3；无法到达时返回 {@link #UNREACHABLE}。 */
+    public int mod3(long board) {
+        return get(ranker.rank(PositionRanker.canonical(generator, board, keepIds)));
+    }
+
+    public boolean isSolvable(long board) {
+        return mod3(board) != UNREACHABLE;
+    }
+
+    /** 最短解的一步（见 {@link MoveGenerator#encodeMove}）；已到达目标或无解时返回 {@link BfsSolver#NO_MOVE}。 */
+    public int bestMove(long board) {
+        int value = mod3(board);
+        if (value == UNREACHABLE || (board & goalMask) == goalValue) return BfsSolver.NO_MOVE;
+        int closer = (value + 2) % 3;
+        long[] next = new long[generator.maxMoves()];
+        int[] moves = new int[generator.maxMoves()];
+        int n = generator.expand(board, next, moves);
+        for (int i = 0; i < n; i++) {
+            if (mod3(next[i]) == closer) return moves[i];
+        }
+        return BfsSolver.NO_MOVE;
+    }
+
+    /** 沿最短解走到目标得到的准确步数；无解时返回 -1。 */
+    public int distance(long board) {
+        if (!isSolvable(board)) return -1;
+        int steps = 0;
+        int move;
+        while ((move = bestMove(board)) != BfsSolver.NO_MOVE) {
+            board = generator.apply(board, move);
+            steps++;
+        }
+        return steps;
+    }
+
+    /** 位数组占用的字节数。 */
+    public long byteSize() {
+        return (long) bits.length * Long.BYTES;
+    }
+
+    private int get(long rank) {
+        return (int) (bits[(int) (rank >>> 5)] >>> ((rank & 31) << 1)) & 3;
+    }
+
+    private void set(long rank, int value) {
+        int word = (int) (rank >>> 5);
+        int shift = (int) ((rank & 31) << 1);
+        bits[word] = (bits[word] & ~(3L << shift)) | ((long) value << shift);
+    }
+
+    /** 写入文件：先写临时文件再原子替换。 */
+    public void write(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path tmp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(ranker.getWidth());
+            out.writeInt(ranker.getHeight());
+            out.writeLong(goalMask);
+            out.writeLong(goalValue);
+            int[] kinds = ranker.kinds();
+            out.writeInt(kinds.length);
+            for (int k : kinds) out.writeInt(k);
+            out.writeInt(bits.length);
+            for (long word : bits) out.writeLong(word);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static DistanceTable read(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+        if (in.readInt() != MAGIC) throw new IOException("Not a distance table");
+        int version = in.readInt();
+        if (version != VERSION) throw new IOException("Unsupported distance table version " + version);
+        int width = in.readInt();
+        int height = in.readInt();
+        long goalMask = in.readLong();
+        long goalValue = in.readLong();
+        int[] kinds = new int[in.readInt()];
+        for (int i = 0; i < kinds.length; i++) kinds[i] = in.readInt();
+        long[] bits = new long[in.readInt()];
+        for (int i = 0; i < bits.length; i++) bits[i] = in.readLong();
+        PositionRanker ranker = PositionRanker.fromKinds(width, height, kinds);
+        if (bits.length != (ranker.size() + 31) / 32) throw new IOException("Distance table size mismatch");
+        return new DistanceTable(ranker, goalMask, goalValue, bits);
+    }
+
+    /** 文件名由尺寸、目标和编号后的方块组合决定，组合相同的关卡共用一张表。 */
+    public static String fileName(int width, int height, Goal goal, long board) {
+        StringBuilder name = new StringBuilder();
+        name.append(width).append('x').append(height)
+                .append('-').append(Long.toHexString(goal.mask(width)))
+                .append('-').append(Long.toHexString(goal.value(width)));
+        int[] kinds = PositionRanker.kindsOf(width, height, PositionRanker.canonical(width, height, board, goal));
+        for (int k = 4; k < kinds.length; k += 4) {
+            name.append('-').append(kinds[k]).append(kinds[k + 1]).append(kinds[k + 2]).append('x').append(kinds[k + 3]);
+        }
+        return name.append(".k2dt").toString();
+    }
+
+    /** 从游戏资源中惰性加载与 board 匹配的表；没有随游戏发布时返回 null。 */
+    public static DistanceTable forBoard(int width, int height, Goal goal, long board) {
+        String resource = RESOURCE_DIR + fileName(width, height, goal, board);
+        return LOADED.computeIfAbsent(resource, r -> {
+            try (InputStream in = DistanceTable.class.getResourceAsStream(r)) {
+                return in == null ? Optional.empty() : Optional.of(read(in));
+            } catch (IOException e) {
+                e.printStackTrace();
+                return Optional.empty();
+            }
+        }).orElse(null);
+    }
+}
@@ -0,0 +1,46 @@
+package controller.solver;
+
+import model.BoardCodec;
+import model.Goal;
+import tool.tool;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * 离线构建内置关卡的 2 位距离表。
+ * 用法：{@code java controller.solver.DistanceTableBuilder [输出目录] [检查点目录]}，默认写到 src/resources/tables，
+ * 随资源一起打包后由 {@link DistanceTable#forBoard} 加载。
+ * 指定检查点目录时每分钟写一次检查点，中断后用同样的命令重新运行即可接着算。
+ */
+public final class DistanceTableBuilder {
+    private static final long CHECKPOINT_INTERVAL_MILLIS = 60_000;
+
+    private DistanceTableBuilder() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path dir = Paths.get(args.length > 0 ? args[0] : "src/resources/tables");
+        Path checkpoints = args.length > 1 ? Paths.get(args[1]) : null;
+        Set<String> built = new LinkedHashSet<>();
+        for (String level : tool.LEVEL_NAMES) {
+            int[][] matrix = tool.levelByName(level);
+            int width = matrix[0].length;
+            int height = matrix.length;
+            long board = BoardCodec.pack(matrix);
+            Goal goal = tool.goalByName(level);
+            String name = DistanceTable.fileName(width, height, goal, board);
+            if (!built.add(name)) continue;
+            long begin = System.nanoTime();
+            Path checkpoint = checkpoints != null ? checkpoints.resolve(name + ".ckpt") : null;
+            DistanceTable table = DistanceTable.build(DistanceTable.rankerFor(width, height, goal, board),
+                    goal, checkpoint, CHECKPOINT_INTERVAL_MILLIS);
+            table.write(dir.resolve(name));
+            System.out.printf("%s: %d positions, %d bytes, %.1f ms%n", name, table.getRanker().size(),
+                    table.byteSize(), (System.nanoTime() - begin) / 1e6);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package controller.solver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按路径缓存从磁盘读出的离线数据，以文件的修改时间为准：
+ * 文件不存在时不留记录，运行中才生成的文件下次调用即可用上；文件被替换后重新读取；
+ * 读坏的文件在修改时间不变时记为 null，不反复读盘报错。
+ */
+final class FileCache<T> {
+    interface Reader<T> {
+        T read(InputStream in) throws IOException;
+    }
+
+    private static final class Entry<T> {
+        final FileTime modified;
+        final T value;
+
+        Entry(FileTime modified, T value) {
+            this.modified = modified;
+            this.value = value;
+        }
+    }
+
+    private final ConcurrentHashMap<Path, Entry<T>> entries = new ConcurrentHashMap<>();
+    private final Reader<T> reader;
+
+    FileCache(Reader<T> reader) {
+        this.reader = reader;
+    }
+
+    /** 读出 file 的内容；不存在或损坏时返回 null。 */
+    T get(Path file) {
+        if (!Files.isRegularFile(file)) {
+            entries.remove(file);
+            return null;
+        }
+        FileTime modified;
+        try {
+            modified = Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return null;
+        }
+        // 同一文件只由一个线程读盘
+        return entries.compute(file, (f, cached) -> {
+            if (cached != null && cached.modified.equals(modified)) return cached;
+            try (InputStream in = Files.newInputStream(f)) {
+                return new Entry<>(modified, reader.read(in));
+            } catch (IOException e) {
+                e.printStackTrace();
+                return new Entry<>(modified, null);
+            }
+        }).value;
+    }
+
+    /** 丢弃 file 的缓存，例如刚写过该文件。 */
+    void invalidate(Path file) {
+        entries.remove(file);
+    }
+}
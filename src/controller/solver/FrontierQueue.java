@@ -0,0 +1,22 @@
+package controller.solver;
+
+/**
+ * 广度优先搜索的前沿队列，只保存压缩棋盘。
+ * 用完必须 {@link #close()}，堆外实现会在此时立即归还内存。
+ */
+public interface FrontierQueue extends AutoCloseable {
+    void add(long board);
+
+    long poll();
+
+    boolean isEmpty();
+
+    long size();
+
+    @Override
+    void close();
+
+    static FrontierQueue create(boolean offHeap) {
+        return offHeap ? new OffHeapFrontierQueue() : new HeapFrontierQueue();
+    }
+}
@@ -0,0 +1,68 @@
+package controller.solver;
+
+import model.Board;
+import model.Goal;
+
+/**
+ * 贪心最佳优先搜索：总是先展开估价最小的局面。
+ * 展开的节点远少于 BFS，但解通常不是最短，作为大棋盘或超时时的后备。
+ */
+public final class GreedySolver implements SolverStrategy {
+    private final Heuristic.Factory heuristics;
+
+    public GreedySolver() {
+        this(ManhattanHeuristic.FACTORY);
+    }
+
+    /** 使用指定的估价，例如 {@link LinearHeuristic#learnedOr(Heuristic.Factory)}。 */
+    public GreedySolver(Heuristic.Factory heuristics) {
+        this.heuristics = heuristics;
+    }
+
+    @Override
+    public String name() {
+        return "greedy";
+    }
+
+    @Override
+    public boolean isOptimal() {
+        return false;
+    }
+
+    @Override
+    public SolverResult solve(Board board, Goal goal) {
+        long startTime = System.nanoTime();
+        MoveGenerator generator = new MoveGenerator(board.getWidth(), board.getHeight());
+        Heuristic heuristic = heuristics.create(board.getWidth(), board.getHeight(), goal);
+        long goalMask = goal.mask(board.getWidth());
+        long goalValue = goal.value(board.getWidth());
+        long start = board.getCells();
+        if ((start & goalMask) == goalValue) {
+            return new SolverResult(name(), true, false, new int[0], 0, System.nanoTime() - startTime);
+        }
+
+        long[] boards = new long[generator.maxMoves()];
+        int[] moves = new int[generator.maxMoves()];
+        long expanded = 0;
+        BoardHeap open = new BoardHeap();
+        try (VisitedTable visited = VisitedTable.create(false)) {
+            open.add(start, heuristic.estimate(start));
+            visited.putIfAbsent(start, SearchPaths.ROOT);
+            while (!open.isEmpty()) {
+                long current = open.poll();
+                expanded++;
+                int n = generator.expand(current, boards, moves);
+                for (int i = 0; i < n; i++) {
+                    long next = boards[i];
+                    if (!visited.putIfAbsent(next, moves[i])) continue;
+                    if ((next & goalMask) == goalValue) {
+                        int[] path = SearchPaths.reconstruct(generator, visited, next);
+                        return new SolverResult(name(), true, false, path, expanded, System.nanoTime() - startTime);
+                    }
+                    open.add(next, heuristic.estimate(next));
+                }
+            }
+        }
+        return SolverResult.unsolved(name(), expanded, System.nanoTime() - startTime);
+    }
+}
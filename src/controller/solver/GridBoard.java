@@ -0,0 +1,138 @@
+package controller.solver;
+
+import model.Board;
+import model.BoardCodec;
+import model.Goal;
+
+import java.util.Arrays;
+
+/**
+ * 任意尺寸的不可变棋盘：每格一个字节的 ID，按行优先排列。
+ * 压缩棋盘（{@link BoardCodec}）最多 21 格，更大的自定义棋盘由束搜索、MCTS 等近似搜索在这种表示上进行；
+ * 两种表示的走法编码相同（见 {@link MoveGenerator#encodeMove}）。
+ */
+public final class GridBoard {
+    private final int width;
+    private final int height;
+    private final byte[] cells;
+    private final int hash;
+
+    // 接管 cells，调用方之后不能再修改
+    GridBoard(int width, int height, byte[] cells) {
+        this.width = width;
+        this.height = height;
+        this.cells = cells;
+        this.hash = 31 * (31 * width + height) + Arrays.hashCode(cells);
+    }
+
+    public static GridBoard of(int[][] matrix) {
+        int height = matrix.length;
+        int width = matrix[0].length;
+        byte[] cells = new byte[width * height];
+        for (int r = 0; r < height; r++) {
+            if (matrix[r].length != width) throw new IllegalArgumentException("Ragged matrix");
+            for (int c = 0; c < width; c++) {
+                int id = matrix[r][c];
+                if (id < 0 || id > BoardCodec.CELL_MASK) {
+                    throw new IllegalArgumentException("Cell id out of range: " + id);
+                }
+                cells[r * width + c] = (byte) id;
+            }
+        }
+        return new GridBoard(width, height, cells);
+    }
+
+    public static GridBoard of(Board board) {
+        return unpack(board.getWidth(), board.getHeight(), board.getCells());
+    }
+
+    public static GridBoard unpack(int width, int height, long packed) {
+        byte[] cells = new byte[width * height];
+        unpack(packed, cells);
+        return new GridBoard(width, height, cells);
+    }
+
+    /** 把压缩棋盘逐格展开到 out。 */
+    static void unpack(long packed, byte[] out) {
+        for (int cell = 0; cell < out.length; cell++) out[cell] = (byte) BoardCodec.get(packed, cell);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int get(int cell) {
+        return cells[cell];
+    }
+
+    public int get(int row, int col) {
+        return cells[row * width + col];
+    }
+
+    // 内部数组，只读
+    byte[] cells() {
+        return cells;
+    }
+
+    /** 能否压缩进一个 long，能时可交给精确搜索。 */
+    public boolean isPackable() {
+        return BoardCodec.fits(width, height);
+    }
+
+    public long pack() {
+        if (!isPackable()) {
+            throw new IllegalArgumentException("Board " + width + "x" + height + " does not fit in a long");
+        }
+        long packed = 0;
+        for (int cell = 0; cell < cells.length; cell++) packed = BoardCodec.set(packed, cell, cells[cell]);
+        return packed;
+    }
+
+    public boolean isReached(Goal goal) {
+        return isReached(cells, width, height, goal);
+    }
+
+    /** 在逐格表示上判定目标，不受压缩棋盘格数的限制。 */
+    static boolean isReached(byte[] cells, int width, int height, Goal goal) {
+        for (int t = 0; t < goal.targetCount(); t++) {
+            int id = goal.targetId(t);
+            int bottom = goal.targetRow(t) + goal.targetHeight(t);
+            int right = goal.targetCol(t) + goal.targetWidth(t);
+            if (bottom > height || right > width) return false;
+            for (int r = goal.targetRow(t); r < bottom; r++) {
+                for (int c = goal.targetCol(t); c < right; c++) {
+                    if (cells[r * width + c] != id) return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    public int[][] toMatrix() {
+        int[][] matrix = new int[height][width];
+        for (int cell = 0; cell < cells.length; cell++) matrix[cell / width][cell % width] = cells[cell];
+        return matrix;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof GridBoard)) return false;
+        GridBoard b = (GridBoard) o;
+        return hash == b.hash && width == b.width && height == b.height && Arrays.equals(cells, b.cells);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.deepToString(toMatrix());
+    }
+}
@@ -0,0 +1,144 @@
+package controller.solver;
+
+import model.Direction;
+
+import java.util.Arrays;
+
+/**
+ * 在逐格表示（见 {@link GridBoard}）上生成和执行移动，棋盘尺寸不受限制。
+ * 方块形状的推断和走法编码与 {@link MoveGenerator} 相同。
+ * 内部有扫描用的缓冲区，一个实例不能跨线程共享。
+ */
+public final class GridMoveGenerator {
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final int width;
+    private final int height;
+    private final int cells;
+    private final boolean[] seen;
+
+    public GridMoveGenerator(int width, int height) {
+        if (width <= 0 || height <= 0) throw new IllegalArgumentException("Invalid board size");
+        this.width = width;
+        this.height = height;
+        this.cells = width * height;
+        this.seen = new boolean[cells];
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int maxMoves() {
+        return cells * DIRECTIONS.length;
+    }
+
+    /** 撤销 move 的移动：方块从新位置沿相反方向移回。 */
+    public int inverse(int move) {
+        Direction d = MoveGenerator.directionOf(move);
+        int moved = MoveGenerator.cellOf(move) + d.getRow() * width + d.getCol();
+        return moved * 4 + ((move + 2) & 3);
+    }
+
+    /** 列出 board 上所有合法的移动，写入 outMoves，返回个数。 */
+    public int moves(byte[] board, int[] outMoves) {
+        Arrays.fill(seen, false);
+        int count = 0;
+        for (int cell = 0; cell < cells; cell++) {
+            if (seen[cell]) continue;
+            int id = board[cell];
+            if (id == 0) continue;
+            int row = cell / width;
+            int col = cell % width;
+            int h = pieceHeight(board, id, row, col);
+            int w = pieceWidth(board, id, row, col);
+            for (int r = 0; r < h; r++) {
+                for (int c = 0; c < w; c++) seen[cell + r * width + c] = true;
+            }
+            for (Direction d : DIRECTIONS) {
+                if (canShift(board, row, col, h, w, d)) outMoves[count++] = MoveGenerator.encodeMove(cell, d);
+            }
+        }
+        return count;
+    }
+
+    /** 展开 board 的所有后继，返回后继个数。 */
+    public int expand(GridBoard board, GridBoard[] outBoards, int[] outMoves) {
+        int n = moves(board.cells(), outMoves);
+        for (int i = 0; i < n; i++) {
+            byte[] next = board.cells().clone();
+            applyInPlace(next, outMoves[i]);
+            outBoards[i] = new GridBoard(width, height, next);
+        }
+        return n;
+    }
+
+    /** 执行一个已编码的移动，返回新棋盘；不合法时返回 null。 */
+    public GridBoard apply(GridBoard board, int move) {
+        byte[] cellsOf = board.cells();
+        int cell = MoveGenerator.cellOf(move);
+        int id = cellsOf[cell];
+        if (id == 0) return null;
+        int row = cell / width;
+        int col = cell % width;
+        if (!canShift(cellsOf, row, col, pieceHeight(cellsOf, id, row, col), pieceWidth(cellsOf, id, row, col),
+                MoveGenerator.directionOf(move))) {
+            return null;
+        }
+        byte[] next = cellsOf.clone();
+        applyInPlace(next, move);
+        return new GridBoard(width, height, next);
+    }
+
+    /** 原地执行一个合法的移动（例如来自 {@link #moves}），不做检查。 */
+    public void applyInPlace(byte[] board, int move) {
+        int cell = MoveGenerator.cellOf(move);
+        Direction d = MoveGenerator.directionOf(move);
+        byte id = board[cell];
+        int row = cell / width;
+        int col = cell % width;
+        int h = pieceHeight(board, id, row, col);
+        int w = pieceWidth(board, id, row, col);
+        for (int r = row; r < row + h; r++) {
+            for (int c = col; c < col + w; c++) board[r * width + c] = 0;
+        }
+        for (int r = row + d.getRow(); r < row + d.getRow() + h; r++) {
+            for (int c = col + d.getCol(); c < col + d.getCol() + w; c++) board[r * width + c] = id;
+        }
+    }
+
+    // 平移后新占的格子都在棋盘内且为空
+    private boolean canShift(byte[] board, int row, int col, int h, int w, Direction d) {
+        int newRow = row + d.getRow();
+        int newCol = col + d.getCol();
+        if (newRow < 0 || newCol < 0 || newRow + h > height || newCol + w > width) return false;
+        for (int r = newRow; r < newRow + h; r++) {
+            for (int c = newCol; c < newCol + w; c++) {
+                boolean inside = r >= row && r < row + h && c >= col && c < col + w;
+                if (!inside && board[r * width + c] != 0) return false;
+            }
+        }
+        return true;
+    }
+
+    int pieceHeight(byte[] board, int id, int row, int col) {
+        if (id == 7) return 2;
+        if (id >= 3 && id <= 6) {
+            return row + 1 < height && board[(row + 1) * width + col] == id ? 2 : 1;
+        }
+        return 1;
+    }
+
+    int pieceWidth(byte[] board, int id, int row, int col) {
+        if (id == 7 || id == 2) return 2;
+        if (id >= 3 && id <= 6) {
+            boolean vertical = row + 1 < height && board[(row + 1) * width + col] == id;
+            return !vertical && col + 1 < width && board[row * width + col + 1] == id ? 2 : 1;
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,50 @@
+package controller.solver;
+
+/**
+ * 堆内实现：可扩容的 long 环形缓冲区。
+ */
+final class HeapFrontierQueue implements FrontierQueue {
+    private long[] items = new long[1 << 12];
+    private int head;
+    private int size;
+
+    @Override
+    public void add(long board) {
+        if (size == items.length) {
+            long[] grown = new long[items.length * 2];
+            for (int i = 0; i < size; i++) {
+                grown[i] = items[(head + i) & (items.length - 1)];
+            }
+            items = grown;
+            head = 0;
+        }
+        items[(head + size) & (items.length - 1)] = board;
+        size++;
+    }
+
+    @Override
+    public long poll() {
+        if (size == 0) throw new IllegalStateException("Queue is empty");
+        long board = items[head];
+        head = (head + 1) & (items.length - 1);
+        size--;
+        return board;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public void close() {
+        items = new long[0];
+        head = 0;
+        size = 0;
+    }
+}
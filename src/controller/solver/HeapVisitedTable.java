@@ -0,0 +1,65 @@
+package controller.solver;
+
+/**
+ * 堆内实现：long 键数组 + byte 值数组的线性探测哈希表，负载超过一半时翻倍。
+ */
+final class HeapVisitedTable implements VisitedTable {
+    private long[] keys = new long[1 << 12];
+    private byte[] values = new byte[1 << 12];
+    private long size;
+
+    @Override
+    public boolean putIfAbsent(long key, int value) {
+        if (key == 0) throw new IllegalArgumentException("Key 0 is reserved");
+        if ((size + 1) * 2 > keys.length) grow();
+        int mask = keys.length - 1;
+        int slot = (int) VisitedTable.mix(key) & mask;
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) return false;
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = (byte) value;
+        size++;
+        return true;
+    }
+
+    @Override
+    public int get(long key) {
+        int mask = keys.length - 1;
+        int slot = (int) VisitedTable.mix(key) & mask;
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) return values[slot] & 0xFF;
+            slot = (slot + 1) & mask;
+        }
+        return ABSENT;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public void close() {
+        keys = new long[1];
+        values = new byte[1];
+        size = 0;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        byte[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new byte[oldKeys.length * 2];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            long key = oldKeys[i];
+            if (key == 0) continue;
+            int slot = (int) VisitedTable.mix(key) & mask;
+            while (keys[slot] != 0) slot = (slot + 1) & mask;
+            keys[slot] = key;
+            values[slot] = oldValues[i];
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package controller.solver;
+
+import model.Goal;
+
+/**
+ * 局面估价：返回到目标的估计步数。用于 A*、贪心等有信息的搜索。
+ */
+public interface Heuristic {
+    int estimate(long board);
+
+    /**
+     * 在逐格表示（行优先，见 {@link GridBoard}）上估价，供束搜索、MCTS 等在大棋盘上使用。
+     * 只能查压缩棋盘的估价（如模式数据库）在棋盘装得下时压缩后查，装不下时退回自己的后备估价。
+     */
+    int estimate(byte[] cells);
+
+    /** 按棋盘尺寸和目标创建估价，求解器借此在运行时换用不同的估价。 */
+    interface Factory {
+        Heuristic create(int width, int height, Goal goal);
+    }
+}
@@ -0,0 +1,265 @@
+package controller.solver;
+
+import model.BoardCodec;
+import model.Goal;
+import tool.tool;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 离线训练 {@link LinearHeuristic}：对内置关卡和随机生成的若干种尺寸的小/中布局（见 {@link LayoutGenerator}）
+ * 枚举起点所在的连通分量，从分量内的全部目标局面反向 BFS 得到每个局面的精确步数，再用带岭正则的最小二乘拟合权重。
+ * 训练完后在没参与训练的更大尺寸上评估：与精确步数的平均误差、与曼哈顿距离的对比，以及束搜索的求解情况，
+ * 用来确认权重能推广到大棋盘。
+ * 用法：{@code java controller.solver.HeuristicTrainer [输出文件] [每种尺寸的布局数] [随机种子]}，
+ * 默认写到 {@link PatternDatabase#directory()} 下的 {@link LinearHeuristic#FILE_NAME}。
+ */
+public final class HeuristicTrainer {
+    private static final double RIDGE = 1e-3;
+    /** 参与训练的生成布局尺寸（宽 × 高），都能压缩进一个 long。 */
+    private static final int[][] TRAIN_SIZES = {{4, 4}, {4, 5}, {5, 4}};
+    /** 只用来评估的尺寸：与训练同尺寸的新布局做对照，其余超出压缩棋盘。 */
+    private static final int[][] EVAL_SIZES = {{4, 5}, {5, 5}, {4, 6}, {5, 6}};
+    private static final int BLANKS = 2;
+    /** 生成布局时从目标局面随机走的步数。 */
+    private static final int SCRAMBLE = 5000;
+    /** 单个生成布局的连通分量（评估时为 BFS 的局面数）上限，超过的布局跳过。 */
+    private static final int MAX_COMPONENT = 1_000_000;
+    private static final int EVAL_BEAM_WIDTH = 256;
+    /** 评估时跳过离目标太近的起点，它们对估价没有区分度。 */
+    private static final int MIN_EVAL_DISTANCE = 10;
+
+    private HeuristicTrainer() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path out = args.length > 0 ? Paths.get(args[0])
+                : PatternDatabase.directory().resolve(LinearHeuristic.FILE_NAME);
+        int layouts = args.length > 1 ? Integer.parseInt(args[1]) : 40;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+        Fit fit = new Fit();
+        for (String level : tool.LEVEL_NAMES) {
+            int[][] matrix = tool.levelByName(level);
+            long begin = System.nanoTime();
+            Component component = Component.explore(matrix[0].length, matrix.length, tool.goalByName(level),
+                    BoardCodec.pack(matrix), Integer.MAX_VALUE);
+            fit.add(component, new BoardFeatures(tool.goalByName(level), matrix[0].length, matrix.length));
+            System.out.printf("%s: %d states, %.1f ms%n", level, component.size, (System.nanoTime() - begin) / 1e6);
+        }
+        LayoutGenerator generator = new LayoutGenerator(seed);
+        for (int[] size : TRAIN_SIZES) {
+            int width = size[0];
+            int height = size[1];
+            Goal goal = LayoutGenerator.goalFor(width, height);
+            BoardFeatures features = new BoardFeatures(goal, width, height);
+            int used = 0;
+            long states = 0;
+            for (int i = 0; i < layouts; i++) {
+                long start = BoardCodec.pack(generator.generate(width, height, BLANKS, SCRAMBLE));
+                Component component = Component.explore(width, height, goal, start, MAX_COMPONENT);
+                if (component == null) continue; // 太大
+                fit.add(component, features);
+                used++;
+                states += component.size;
+            }
+            System.out.printf("generated %dx%d: %d/%d layouts, %d states%n", width, height, used, layouts, states);
+        }
+        double[] weights = fit.solve();
+        LinearHeuristic.writeWeights(out, weights);
+        System.out.printf("%d samples, weights %s -> %s%n", fit.samples, Arrays.toString(weights), out);
+
+        // 评估用另一个种子生成，与训练布局不重复
+        LayoutGenerator evalGenerator = new LayoutGenerator(seed ^ 0x5DEECE66DL);
+        for (int[] size : EVAL_SIZES) {
+            evaluate(size[0], size[1], Math.max(4, layouts / 4), evalGenerator, weights);
+        }
+    }
+
+    // 在一种尺寸的新布局上，用起点的精确步数比较学习估价与曼哈顿距离，并各跑一次束搜索
+    private static void evaluate(int width, int height, int layouts, LayoutGenerator generator, double[] weights) {
+        Goal goal = LayoutGenerator.goalFor(width, height);
+        Heuristic learned = new LinearHeuristic(weights, goal, width, height);
+        Heuristic manhattan = new ManhattanHeuristic(goal, width, height);
+        BeamSolver learnedBeam = new BeamSolver(EVAL_BEAM_WIDTH, (w, h, g) -> new LinearHeuristic(weights, g, w, h));
+        BeamSolver manhattanBeam = new BeamSolver(EVAL_BEAM_WIDTH, ManhattanHeuristic.FACTORY);
+        double learnedError = 0;
+        double manhattanError = 0;
+        int used = 0;
+        int learnedSolved = 0;
+        int manhattanSolved = 0;
+        long optimalLength = 0;
+        long learnedLength = 0;
+        long manhattanLength = 0;
+        for (int attempt = 0; attempt < layouts * 4 && used < layouts; attempt++) {
+            GridBoard start = GridBoard.of(generator.generate(width, height, BLANKS, SCRAMBLE));
+            int d = exactDistance(start, goal, MAX_COMPONENT);
+            if (d < MIN_EVAL_DISTANCE) continue;
+            used++;
+            learnedError += Math.abs(learned.estimate(start.cells()) - d);
+            manhattanError += Math.abs(manhattan.estimate(start.cells()) - d);
+            SolverResult a = learnedBeam.solve(start, goal);
+            SolverResult b = manhattanBeam.solve(start, goal);
+            if (a.isSolved()) learnedSolved++;
+            if (b.isSolved()) manhattanSolved++;
+            // 两者都解出的布局才比较长度，避免只算容易的那些
+            if (a.isSolved() && b.isSolved()) {
+                optimalLength += d;
+                learnedLength += a.getLength();
+                manhattanLength += b.getLength();
+            }
+        }
+        if (used == 0) {
+            System.out.printf("eval %dx%d: no usable layouts%n", width, height);
+            return;
+        }
+        System.out.printf("eval %dx%d%s: %d layouts, mean abs error learned %.2f vs manhattan %.2f; "
+                        + "beam(%d) solved %d vs %d, length %.2fx vs %.2fx optimal%n",
+                width, height, BoardCodec.fits(width, height) ? "" : " (held out)", used,
+                learnedError / used, manhattanError / used, EVAL_BEAM_WIDTH, learnedSolved, manhattanSolved,
+                optimalLength == 0 ? 0 : (double) learnedLength / optimalLength,
+                optimalLength == 0 ? 0 : (double) manhattanLength / optimalLength);
+    }
+
+    // 正规方程的累加量
+    private static final class Fit {
+        final int n = BoardFeatures.COUNT;
+        final double[][] gram = new double[n][n];
+        final double[] moments = new double[n];
+        final double[] x = new double[n];
+        long samples;
+
+        void add(Component component, BoardFeatures features) {
+            for (int i = 0; i < component.size; i++) {
+                if (component.distances[i] < 0) continue;
+                features.extract(component.states[i], x);
+                double y = component.distances[i];
+                for (int a = 0; a < n; a++) {
+                    moments[a] += x[a] * y;
+                    for (int b = 0; b < n; b++) gram[a][b] += x[a] * x[b];
+                }
+                samples++;
+            }
+        }
+
+        double[] solve() {
+            for (int a = 0; a < n; a++) gram[a][a] += RIDGE * samples;
+            return HeuristicTrainer.solve(gram, moments);
+        }
+    }
+
+    /**
+     * 一个连通分量：全部局面及其到最近目标局面的精确步数（无法到达目标为 -1），states[0] 为起点。
+     * 局面超过 maxStates 时放弃，返回 null。
+     */
+    static final class Component {
+        long[] states = new long[1 << 12];
+        int[] distances;
+        int size;
+
+        static Component explore(int width, int height, Goal goal, long start, int maxStates) {
+            MoveGenerator generator = new MoveGenerator(width, height);
+            long goalMask = goal.mask(width);
+            long goalValue = goal.value(width);
+            long[] boards = new long[generator.maxMoves()];
+            Component component = new Component();
+            LongIntMap index = new LongIntMap();
+            component.add(index, start);
+            for (int head = 0; head < component.size; head++) {
+                int count = generator.expand(component.states[head], boards, null);
+                for (int i = 0; i < count; i++) {
+                    if (index.get(boards[i]) == LongIntMap.ABSENT) component.add(index, boards[i]);
+                }
+                if (component.size > maxStates) return null;
+            }
+            // 走法可逆，图是无向的：从所有目标局面同时出发的 BFS 即得到每个局面的最短步数
+            int[] distances = new int[component.size];
+            Arrays.fill(distances, -1);
+            int[] queue = new int[component.size];
+            int tail = 0;
+            for (int i = 0; i < component.size; i++) {
+                if ((component.states[i] & goalMask) == goalValue) {
+                    distances[i] = 0;
+                    queue[tail++] = i;
+                }
+            }
+            for (int head = 0; head < tail; head++) {
+                int current = queue[head];
+                int count = generator.expand(component.states[current], boards, null);
+                for (int i = 0; i < count; i++) {
+                    int next = index.get(boards[i]);
+                    if (distances[next] >= 0) continue;
+                    distances[next] = distances[current] + 1;
+                    queue[tail++] = next;
+                }
+            }
+            component.distances = distances;
+            return component;
+        }
+
+        private void add(LongIntMap index, long state) {
+            if (size == states.length) states = Arrays.copyOf(states, size * 2);
+            index.put(state, size);
+            states[size++] = state;
+        }
+    }
+
+    /** 从 start 逐层 BFS 到第一个目标局面的精确步数；无解返回 -1，局面超过 maxStates 时返回 -2。 */
+    static int exactDistance(GridBoard start, Goal goal, int maxStates) {
+        GridMoveGenerator generator = new GridMoveGenerator(start.getWidth(), start.getHeight());
+        GridBoard[] boards = new GridBoard[generator.maxMoves()];
+        int[] moves = new int[generator.maxMoves()];
+        Set<GridBoard> seen = new HashSet<>();
+        seen.add(start);
+        List<GridBoard> layer = new ArrayList<>();
+        layer.add(start);
+        for (int depth = 0; !layer.isEmpty(); depth++) {
+            for (GridBoard board : layer) {
+                if (board.isReached(goal)) return depth;
+            }
+            if (seen.size() > maxStates) return -2;
+            List<GridBoard> next = new ArrayList<>();
+            for (GridBoard board : layer) {
+                int count = generator.expand(board, boards, moves);
+                for (int i = 0; i < count; i++) {
+                    if (seen.add(boards[i])) next.add(boards[i]);
+                }
+            }
+            layer = next;
+        }
+        return -1;
+    }
+
+    // 高斯消元（部分选主元）解正规方程
+    static double[] solve(double[][] matrix, double[] rhs) {
+        int n = rhs.length;
+        double[][] a = new double[n][];
+        for (int i = 0; i < n; i++) a[i] = Arrays.copyOf(matrix[i], n + 1);
+        for (int i = 0; i < n; i++) a[i][n] = rhs[i];
+        for (int col = 0; col < n; col++) {
+            int pivot = col;
+            for (int r = col + 1; r < n; r++) {
+                if (Math.abs(a[r][col]) > Math.abs(a[pivot][col])) pivot = r;
+            }
+            if (Math.abs(a[pivot][col]) < 1e-12) throw new IllegalArgumentException("Singular system");
+            double[] tmp = a[col];
+            a[col] = a[pivot];
+            a[pivot] = tmp;
+            for (int r = 0; r < n; r++) {
+                if (r == col) continue;
+                double factor = a[r][col] / a[col][col];
+                if (factor == 0) continue;
+                for (int c = col; c <= n; c++) a[r][c] -= factor * a[col][c];
+            }
+        }
+        double[] result = new double[n];
+        for (int i = 0; i < n; i++) result[i] = a[i][n] / a[i][i];
+        return result;
+    }
+}
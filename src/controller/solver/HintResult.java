@@ -0,0 +1,50 @@
+package controller.solver;
+
+import model.Direction;
+
+/**
+ * 一次限时提示搜索的结果：建议的第一步，以及做出判断所依据的模拟次数。
+ */
+public final class HintResult {
+    private final int move;
+    private final long playouts;
+    private final long visits;
+    private final double value;
+    private final long elapsedNanos;
+
+    public HintResult(int move, long playouts, long visits, double value, long elapsedNanos) {
+        this.move = move;
+        this.playouts = playouts;
+        this.visits = visits;
+        this.value = value;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /** 编码后的第一步；没有可走的步时为 {@link BfsSolver#NO_MOVE}。 */
+    public int getMove() {
+        return move;
+    }
+
+    public Direction getDirection() {
+        return move == BfsSolver.NO_MOVE ? null : MoveGenerator.directionOf(move);
+    }
+
+    /** 预算内完成的模拟总次数。 */
+    public long getPlayouts() {
+        return playouts;
+    }
+
+    /** 建议的那一步被访问的次数。 */
+    public long getVisits() {
+        return visits;
+    }
+
+    /** 建议那一步的平均收益，范围 [0, 1]，到达目标的模拟越多越接近 1。 */
+    public double getValue() {
+        return value;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+}
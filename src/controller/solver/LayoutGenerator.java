@@ -0,0 +1,85 @@
+package controller.solver;
+
+import model.Goal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 随机生成任意尺寸的华容道布局，供离线训练和评估使用。
+ * 先把 2×2（ID 7）放在出口（见 {@link #goalFor}），留出 blanks 个空格，其余格子按行优先随机铺上
+ * 竖将（ID 3~6 轮换）、横将（ID 2）和兵（ID 1）；再从这个目标局面随机走若干步打乱。
+ * 布局是从目标局面走出来的，所以一定有解。
+ */
+final class LayoutGenerator {
+    private final Random random;
+
+    LayoutGenerator(long seed) {
+        this.random = new Random(seed);
+    }
+
+    static Goal goalFor(int width, int height) {
+        return Goal.empty().require(7, height - 2, (width - 2) / 2, 2, 2);
+    }
+
+    /** 生成布局并随机走 scramble 步（不立即走回头路）；走完仍在目标局面时换一个布局重来。 */
+    int[][] generate(int width, int height, int blanks, int scramble) {
+        Goal goal = goalFor(width, height);
+        GridMoveGenerator generator = new GridMoveGenerator(width, height);
+        int[] moves = new int[generator.maxMoves()];
+        while (true) {
+            byte[] cells = GridBoard.of(fill(width, height, blanks)).cells().clone();
+            int previous = -1;
+            for (int step = 0; step < scramble; step++) {
+                int n = generator.moves(cells, moves);
+                if (n == 0) break;
+                int pick = random.nextInt(n);
+                if (n > 1 && moves[pick] == previous) pick = (pick + 1 + random.nextInt(n - 1)) % n;
+                generator.applyInPlace(cells, moves[pick]);
+                previous = generator.inverse(moves[pick]);
+            }
+            if (!GridBoard.isReached(cells, width, height, goal)) return new GridBoard(width, height, cells).toMatrix();
+        }
+    }
+
+    // 2×2 在出口的目标局面，其余随机铺满
+    private int[][] fill(int width, int height, int blanks) {
+        if (width < 2 || height < 4) throw new IllegalArgumentException("Board too small: " + width + "x" + height);
+        if (blanks < 1 || blanks > width * height - 4) throw new IllegalArgumentException("Bad blank count: " + blanks);
+        int[][] grid = new int[height][width];
+        for (int[] row : grid) Arrays.fill(row, -1);
+        int bossRow = height - 2;
+        int bossCol = (width - 2) / 2;
+        for (int r = bossRow; r < bossRow + 2; r++) {
+            for (int c = bossCol; c < bossCol + 2; c++) grid[r][c] = 7;
+        }
+        List<Integer> free = new ArrayList<>();
+        for (int cell = 0; cell < width * height; cell++) {
+            if (grid[cell / width][cell % width] < 0) free.add(cell);
+        }
+        for (int i = 0; i < blanks; i++) {
+            int cell = free.remove(random.nextInt(free.size()));
+            grid[cell / width][cell % width] = 0;
+        }
+        int nextVertical = 3;
+        for (int r = 0; r < height; r++) {
+            for (int c = 0; c < width; c++) {
+                if (grid[r][c] >= 0) continue;
+                boolean vertical = r + 1 < height && grid[r + 1][c] < 0;
+                boolean horizontal = c + 1 < width && grid[r][c + 1] < 0;
+                int pick = random.nextInt(100);
+                if (vertical && pick < 60) {
+                    grid[r][c] = grid[r + 1][c] = nextVertical;
+                    nextVertical = nextVertical == 6 ? 3 : nextVertical + 1;
+                } else if (horizontal && pick < 92) {
+                    grid[r][c] = grid[r][c + 1] = 2;
+                } else {
+                    grid[r][c] = 1;
+                }
+            }
+        }
+        return grid;
+    }
+}
@@ -0,0 +1,178 @@
+package controller.solver;
+
+import model.Goal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一个关卡的完整走法图（{@link StateGraph}）加上每个局面到目标的精确步数，建好后不再改变。
+ * 提示、能否解出、剩余步数、某一步好不好，都变成一次二分查找加数组读取。
+ * <p>
+ * 最近用过的几张图放在按访问顺序淘汰的缓存里，同一连通分量内的任何局面都能命中，
+ * 所以玩家在一关里走来走去、撤销、重开都不会重建。
+ */
+public final class LevelGraph {
+    public static final int UNREACHABLE = -1;
+    /** 缓存保留的关卡数。 */
+    public static final int CACHE_CAPACITY = 4;
+    /** 超过该局面数的关卡不建图，交给常规搜索。 */
+    public static final int MAX_NODES = 4_000_000;
+
+    private static final Map<Key, LevelGraph> CACHE = new LinkedHashMap<Key, LevelGraph>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, LevelGraph> eldest) {
+            return size() > CACHE_CAPACITY;
+        }
+    };
+
+    private final StateGraph graph;
+    private final MoveGenerator generator;
+    private final long goalMask;
+    private final long goalValue;
+    private final short[] distances;
+
+    private LevelGraph(StateGraph graph, long goalMask, long goalValue) {
+        this.graph = graph;
+        this.generator = new MoveGenerator(graph.getWidth(), graph.getHeight());
+        this.goalMask = goalMask;
+        this.goalValue = goalValue;
+        this.distances = goalDistances(graph, goalMask, goalValue);
+    }
+
+    public static LevelGraph build(int width, int height, Goal goal, long board) {
+        StateGraph graph = StateGraph.explore(width, height, board, MAX_NODES);
+        return graph == null ? null : new LevelGraph(graph, goal.mask(width), goal.value(width));
+    }
+
+    /** 缓存中包含该局面的图；没有时只查不建，返回 null。 */
+    public static LevelGraph cached(int width, int height, Goal goal, long board) {
+        long mask = goal.mask(width);
+        long value = goal.value(width);
+        synchronized (CACHE) {
+            for (Map.Entry<Key, LevelGraph> e : CACHE.entrySet()) {
+                Key key = e.getKey();
+                if (key.matches(width, height, mask, value) && e.getValue().graph.indexOf(board) >= 0) {
+                    return CACHE.get(key); // 触发访问顺序更新
+                }
+            }
+        }
+        return null;
+    }
+
+    /** 缓存中包含该局面的图；没有时建图并放入缓存。局面太多建不成时返回 null。 */
+    public static LevelGraph forBoard(int width, int height, Goal goal, long board) {
+        LevelGraph found = cached(width, height, goal, board);
+        if (found != null) return found;
+        // 在锁外建图，建图期间不挡住其他关卡的查询
+        LevelGraph built = build(width, height, goal, board);
+        if (built == null) return null;
+        synchronized (CACHE) {
+            CACHE.put(new Key(width, height, built.goalMask, built.goalValue, built.graph.key(0)), built);
+        }
+        return built;
+    }
+
+    public StateGraph getGraph() {
+        return graph;
+    }
+
+    public boolean contains(long board) {
+        return graph.indexOf(board) >= 0;
+    }
+
+    /** 到目标的最少步数；不在图中或无解时返回 {@link #UNREACHABLE}。 */
+    public int distance(long board) {
+        int node = graph.indexOf(board);
+        return node < 0 ? UNREACHABLE : distances[node];
+    }
+
+    public boolean isSolvable(long board) {
+        return distance(board) != UNREACHABLE;
+    }
+
+    /** 最短解的一步；已到达目标或无解时返回 {@link BfsSolver#NO_MOVE}。 */
+    public int bestMove(long board) {
+        int d = distance(board);
+        if (d <= 0) return BfsSolver.NO_MOVE;
+        long[] boards = new long[generator.maxMoves()];
+        int[] moves = new int[generator.maxMoves()];
+        int n = generator.expand(board, boards, moves);
+        for (int i = 0; i < n; i++) {
+            if (distance(boards[i]) == d - 1) return moves[i];
+        }
+        return BfsSolver.NO_MOVE;
+    }
+
+    /** 这一步是否让到目标的步数减少；非法的步返回 false。 */
+    public boolean isGoodMove(long board, int move) {
+        int d = distance(board);
+        if (d <= 0) return false;
+        long next = generator.apply(board, move);
+        return next != 0 && distance(next) == d - 1;
+    }
+
+    // 在 CSR 上从全部目标局面同时做 BFS
+    private static short[] goalDistances(StateGraph graph, long goalMask, long goalValue) {
+        int n = graph.nodeCount();
+        short[] distances = new short[n];
+        Arrays.fill(distances, (short) UNREACHABLE);
+        int[] queue = new int[n];
+        int tail = 0;
+        for (int i = 0; i < n; i++) {
+            if ((graph.key(i) & goalMask) == goalValue) {
+                distances[i] = 0;
+                queue[tail++] = i;
+            }
+        }
+        for (int head = 0; head < tail; head++) {
+            int node = queue[head];
+            int next = distances[node] + 1;
+            if (next > Short.MAX_VALUE) throw new IllegalStateException("Distance overflow");
+            for (int k = 0; k < graph.degree(node); k++) {
+                int neighbor = graph.neighbor(node, k);
+                if (distances[neighbor] != UNREACHABLE) continue;
+                distances[neighbor] = (short) next;
+                queue[tail++] = neighbor;
+            }
+        }
+        return distances;
+    }
+
+    // 缓存键：尺寸 + 编译后的目标 + 连通分量中最小的局面（分量的标识）
+    private static final class Key {
+        final int width;
+        final int height;
+        final long goalMask;
+        final long goalValue;
+        final long component;
+
+        Key(int width, int height, long goalMask, long goalValue, long component) {
+            this.width = width;
+            this.height = height;
+            this.goalMask = goalMask;
+            this.goalValue = goalValue;
+            this.component = component;
+        }
+
+        boolean matches(int width, int height, long goalMask, long goalValue) {
+            return this.width == width && this.height == height
+                    && this.goalMask == goalMask && this.goalValue == goalValue;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return matches(k.width, k.height, k.goalMask, k.goalValue) && component == k.component;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(component * 31 + goalMask) ^ (width << 8 | height);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package controller.solver;
+
+import model.BoardCodec;
+import model.Goal;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * 离线训练的线性估价：对 {@link BoardFeatures} 做加权求和，权重由 {@link HeuristicTrainer}
+ * 用已知精确距离做最小二乘拟合得到。估价不保证是下界，只适合贪心、束搜索等不要求最短的搜索。
+ * <p>
+ * 权重文件格式（大端）：magic, version, 特征个数, 各权重(double)。
+ */
+public final class LinearHeuristic implements Heuristic {
+    private static final int MAGIC = 0x4B4C4857; // "KLHW"
+    private static final int VERSION = 1;
+    /** 默认权重文件名，位于 {@link PatternDatabase#directory()} 下。 */
+    public static final String FILE_NAME = "linear-heuristic.bin";
+
+    private static final FileCache<double[]> LOADED = new FileCache<>(LinearHeuristic::readWeights);
+
+    private final double[] weights;
+    private final BoardFeatures features;
+    private final double[] buffer = new double[BoardFeatures.COUNT];
+    private final Goal goal;
+    private final int width;
+    private final int height;
+    private final long goalMask;
+    private final long goalValue;
+
+    public LinearHeuristic(double[] weights, Goal goal, int width, int height) {
+        if (weights.length != BoardFeatures.COUNT) {
+            throw new IllegalArgumentException("Expected " + BoardFeatures.COUNT + " weights, got " + weights.length);
+        }
+        this.weights = weights.clone();
+        this.features = new BoardFeatures(goal, width, height);
+        this.goal = goal;
+        this.width = width;
+        this.height = height;
+        // 大棋盘的目标区可能超出压缩棋盘，只在逐格表示上判定
+        boolean packed = BoardCodec.fits(width, height);
+        this.goalMask = packed ? goal.mask(width) : 0;
+        this.goalValue = packed ? goal.value(width) : 1;
+    }
+
+    /** 同一实例内部复用特征缓冲区，不能跨线程共享。 */
+    @Override
+    public int estimate(long board) {
+        if ((board & goalMask) == goalValue) return 0;
+        features.extract(board, buffer);
+        return weighted();
+    }
+
+    @Override
+    public int estimate(byte[] cells) {
+        if (GridBoard.isReached(cells, width, height, goal)) return 0;
+        features.extract(cells, buffer);
+        return weighted();
+    }
+
+    private int weighted() {
+        double sum = 0;
+        for (int i = 0; i < weights.length; i++) {
+            sum += weights[i] * buffer[i];
+        }
+        return Math.max(1, (int) Math.round(sum));
+    }
+
+    /** 有训练好的权重文件时用学习估价，否则用 fallback。 */
+    public static Heuristic.Factory learnedOr(Heuristic.Factory fallback) {
+        return (width, height, goal) -> {
+            double[] weights = lazyLoad(PatternDatabase.directory().resolve(FILE_NAME));
+            return weights != null
+                    ? new LinearHeuristic(weights, goal, width, height)
+                    : fallback.create(width, height, goal);
+        };
+    }
+
+    /** 文件不变时只读一次盘；不存在或损坏时返回 null。 */
+    public static double[] lazyLoad(Path file) {
+        return LOADED.get(file);
+    }
+
+    public static double[] readWeights(InputStream input) throws IOException {
+        DataInputStream in = new DataInputStream(input);
+        if (in.readInt() != MAGIC) throw new IOException("Not a heuristic weights file");
+        int version = in.readInt();
+        if (version != VERSION) throw new IOException("Unsupported weights version " + version);
+        int count = in.readInt();
+        if (count != BoardFeatures.COUNT) throw new IOException("Weights are for " + count + " features");
+        double[] weights = new double[count];
+        for (int i = 0; i < count; i++) weights[i] = in.readDouble();
+        return weights;
+    }
+
+    /** 先写临时文件再原子替换。 */
+    public static void writeWeights(Path file, double[] weights) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path tmp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(weights.length);
+            for (double w : weights) out.writeDouble(w);
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        LOADED.invalidate(file);
+    }
+}
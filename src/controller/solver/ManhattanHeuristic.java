@@ -0,0 +1,72 @@
+package controller.solver;
+
+import model.BoardCodec;
+import model.Goal;
+
+/**
+ * 曼哈顿距离估价：对目标中的每个目标格，取同 ID 的最近格到它的距离，
+ * 再在所有目标格中取最大值。每步只移动一格，所以这是可采纳的下界。
+ */
+public final class ManhattanHeuristic implements Heuristic {
+    public static final Heuristic.Factory FACTORY =
+            (width, height, goal) -> new ManhattanHeuristic(goal, width, height);
+
+    private final int width;
+    private final int cells;
+    private final int[] targetIds;
+    private final int[] targetRows;
+    private final int[] targetCols;
+
+    public ManhattanHeuristic(Goal goal, int width, int height) {
+        this.width = width;
+        this.cells = width * height;
+        int n = 0;
+        for (int t = 0; t < goal.targetCount(); t++) {
+            n += goal.targetHeight(t) * goal.targetWidth(t);
+        }
+        targetIds = new int[n];
+        targetRows = new int[n];
+        targetCols = new int[n];
+        int i = 0;
+        for (int t = 0; t < goal.targetCount(); t++) {
+            for (int r = 0; r < goal.targetHeight(t); r++) {
+                for (int c = 0; c < goal.targetWidth(t); c++) {
+                    targetIds[i] = goal.targetId(t);
+                    targetRows[i] = goal.targetRow(t) + r;
+                    targetCols[i] = goal.targetCol(t) + c;
+                    i++;
+                }
+            }
+        }
+    }
+
+    @Override
+    public int estimate(long board) {
+        int worst = 0;
+        for (int t = 0; t < targetIds.length; t++) {
+            int best = Integer.MAX_VALUE;
+            for (int cell = 0; cell < cells; cell++) {
+                if (BoardCodec.get(board, cell) != targetIds[t]) continue;
+                int d = Math.abs(cell / width - targetRows[t]) + Math.abs(cell % width - targetCols[t]);
+                if (d < best) best = d;
+            }
+            if (best != Integer.MAX_VALUE && best > worst) worst = best;
+        }
+        return worst;
+    }
+
+    @Override
+    public int estimate(byte[] board) {
+        int worst = 0;
+        for (int t = 0; t < targetIds.length; t++) {
+            int best = Integer.MAX_VALUE;
+            for (int cell = 0; cell < cells; cell++) {
+                if (board[cell] != targetIds[t]) continue;
+                int d = Math.abs(cell / width - targetRows[t]) + Math.abs(cell % width - targetCols[t]);
+                if (d < best) best = d;
+            }
+            if (best != Integer.MAX_VALUE && best > worst) worst = best;
+        }
+        return worst;
+    }
+}
@@ -0,0 +1,222 @@
+package controller.solver;
+
+import model.Board;
+import model.Goal;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 蒙特卡洛树搜索：精确搜索和估价搜索都来不及时，在给定的时间预算内给出一个“大概率正确”的第一步。
+ * 每个工作线程反复执行 选择（UCT）→ 扩展 → 随机模拟 → 回传；
+ * 选择时先把经过节点的访问数加一而不加收益（虚拟损失），让并发的线程自然分散到不同分支。
+ * 预算用完后返回根节点下访问次数最多的一步。
+ * <p>
+ * 搜索在逐格表示（{@link GridBoard}）上进行，精确搜索无法处理的大棋盘（超过 21 格）也能使用。
+ */
+public final class MctsSolver {
+    public static final long DEFAULT_BUDGET_MILLIS = 300;
+    public static final int DEFAULT_PLAYOUT_DEPTH = 200;
+    private static final double EXPLORATION = 1.0;
+    // 收益以百万分之一为单位存成整数，方便原子累加
+    private static final double SCALE = 1_000_000;
+
+    private final ForkJoinPool pool;
+    private final int workers;
+    private final long budgetMillis;
+    private final int playoutDepth;
+    private final Heuristic.Factory heuristics;
+
+    public MctsSolver() {
+        this(ForkJoinPool.commonPool(), Runtime.getRuntime().availableProcessors(),
+                DEFAULT_BUDGET_MILLIS, DEFAULT_PLAYOUT_DEPTH, ManhattanHeuristic.FACTORY);
+    }
+
+    public MctsSolver(ForkJoinPool pool, int workers, long budgetMillis, int playoutDepth,
+                      Heuristic.Factory heuristics) {
+        if (workers < 1 || budgetMillis < 1 || playoutDepth < 1) {
+            throw new IllegalArgumentException("Workers, budget and playout depth must be positive");
+        }
+        this.pool = pool;
+        this.workers = workers;
+        this.budgetMillis = budgetMillis;
+        this.playoutDepth = playoutDepth;
+        this.heuristics = heuristics;
+    }
+
+    public HintResult hint(Board board, Goal goal) {
+        return hint(GridBoard.of(board), goal);
+    }
+
+    public HintResult hint(GridBoard board, Goal goal) {
+        long startTime = System.nanoTime();
+        long deadline = startTime + budgetMillis * 1_000_000;
+        int width = board.getWidth();
+        int height = board.getHeight();
+        Node root = new Node(board, BfsSolver.NO_MOVE, null);
+        if (board.isReached(goal)) {
+            return new HintResult(BfsSolver.NO_MOVE, 0, 0, 1, System.nanoTime() - startTime);
+        }
+        root.expand(new GridMoveGenerator(width, height));
+        if (root.children.length == 0) {
+            return new HintResult(BfsSolver.NO_MOVE, 0, 0, 0, System.nanoTime() - startTime);
+        }
+        // 一步就能到达目标时不必模拟
+        for (Node child : root.children) {
+            if (child.board.isReached(goal)) {
+                return new HintResult(child.move, 0, 0, 1, System.nanoTime() - startTime);
+            }
+        }
+
+        AtomicLong playouts = new AtomicLong();
+        CompletableFuture<?>[] tasks = new CompletableFuture<?>[workers];
+        for (int w = 0; w < workers; w++) {
+            // 走法生成器有内部缓冲区，每个工作线程各用一个
+            Worker worker = new Worker(new GridMoveGenerator(width, height), heuristics.create(width, height, goal),
+                    goal, root, deadline, playouts);
+            tasks[w] = CompletableFuture.runAsync(worker, pool);
+        }
+        CompletableFuture.allOf(tasks).join();
+
+        Node best = root.children[0];
+        for (Node child : root.children) {
+            if (child.visits.get() > best.visits.get()) best = child;
+        }
+        long visits = best.visits.get();
+        double value = visits == 0 ? 0 : best.value.get() / SCALE / visits;
+        return new HintResult(best.move, playouts.get(), visits, value, System.nanoTime() - startTime);
+    }
+
+    // 树节点；children 扩展后不再改变，访问数和收益由各线程原子累加
+    private static final class Node {
+        final GridBoard board;
+        final int move;
+        final Node parent;
+        final AtomicLong visits = new AtomicLong();
+        final AtomicLong value = new AtomicLong();
+        volatile Node[] children;
+
+        Node(GridBoard board, int move, Node parent) {
+            this.board = board;
+            this.move = move;
+            this.parent = parent;
+        }
+
+        // 只有一个线程真正扩展，其余线程看到的要么是 null 要么是完整的数组
+        synchronized void expand(GridMoveGenerator generator) {
+            if (children != null) return;
+            GridBoard[] boards = new GridBoard[generator.maxMoves()];
+            int[] moves = new int[generator.maxMoves()];
+            int n = generator.expand(board, boards, moves);
+            GridBoard grandparent = parent == null ? null : parent.board;
+            Node[] result = new Node[n];
+            int count = 0;
+            for (int i = 0; i < n; i++) {
+                if (boards[i].equals(grandparent)) continue; // 不在树里直接走回头路
+                result[count++] = new Node(boards[i], moves[i], this);
+            }
+            children = count == n ? result : Arrays.copyOf(result, count);
+        }
+    }
+
+    private final class Worker implements Runnable {
+        final GridMoveGenerator generator;
+        final Heuristic heuristic;
+        final Goal goal;
+        final Node root;
+        final long deadline;
+        final AtomicLong playouts;
+        final int[] moves;
+        final byte[] scratch;
+        final int rootEstimate;
+
+        Worker(GridMoveGenerator generator, Heuristic heuristic, Goal goal,
+               Node root, long deadline, AtomicLong playouts) {
+            this.generator = generator;
+            this.heuristic = heuristic;
+            this.goal = goal;
+            this.root = root;
+            this.deadline = deadline;
+            this.playouts = playouts;
+            this.moves = new int[generator.maxMoves()];
+            this.scratch = new byte[generator.getWidth() * generator.getHeight()];
+            this.rootEstimate = Math.max(1, heuristic.estimate(root.board.cells()));
+        }
+
+        @Override
+        public void run() {
+            while (System.nanoTime() < deadline) {
+                Node leaf = select();
+                double reward = leaf.board.isReached(goal) ? 1 : playout(leaf);
+                long scaled = (long) (reward * SCALE);
+                for (Node node = leaf; node != null; node = node.parent) {
+                    node.value.addAndGet(scaled);
+                }
+                playouts.incrementAndGet();
+            }
+        }
+
+        // 沿 UCT 最大的孩子下行；经过的节点立即计一次访问（虚拟损失）
+        private Node select() {
+            Node node = root;
+            node.visits.incrementAndGet();
+            while (true) {
+                if (node.board.isReached(goal)) return node;
+                Node[] children = node.children;
+                if (children == null) {
+                    if (node.visits.get() < 2) return node; // 第一次到达的叶子先模拟，不急着扩展
+                    node.expand(generator);
+                    children = node.children;
+                }
+                if (children.length == 0) return node;
+                Node next = bestChild(node, children);
+                next.visits.incrementAndGet();
+                node = next;
+                if (next.visits.get() == 1) return next;
+            }
+        }
+
+        private Node bestChild(Node parent, Node[] children) {
+            double logParent = Math.log(Math.max(1, parent.visits.get()));
+            Node best = null;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (Node child : children) {
+                long visits = child.visits.get();
+                if (visits == 0) return child;
+                double score = child.value.get() / SCALE / visits + EXPLORATION * Math.sqrt(logParent / visits);
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = child;
+                }
+            }
+            return best;
+        }
+
+        // 在复用的缓冲区上原地随机走子，直到到达目标或步数用尽；
+        // 到达目标收益在 [0.5, 1]，越早越高，否则按估价给 [0, 0.5)
+        private double playout(Node leaf) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            byte[] cells = scratch;
+            System.arraycopy(leaf.board.cells(), 0, cells, 0, cells.length);
+            int width = generator.getWidth();
+            int height = generator.getHeight();
+            int back = leaf.parent == null ? BfsSolver.NO_MOVE : generator.inverse(leaf.move);
+            for (int step = 0; step < playoutDepth; step++) {
+                int n = generator.moves(cells, moves);
+                if (n == 0) break;
+                int pick = random.nextInt(n);
+                if (moves[pick] == back && n > 1) pick = (pick + 1 + random.nextInt(n - 1)) % n;
+                generator.applyInPlace(cells, moves[pick]);
+                back = generator.inverse(moves[pick]);
+                if (GridBoard.isReached(cells, width, height, goal)) {
+                    return 1 - 0.5 * step / playoutDepth;
+                }
+            }
+            double estimate = Math.min(heuristic.estimate(cells), 2.0 * rootEstimate);
+            return 0.5 * (1 - estimate / (2.0 * rootEstimate));
+        }
+    }
+}
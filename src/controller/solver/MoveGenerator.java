@@ -0,0 +1,146 @@
+package controller.solver;
+
+import model.BoardCodec;
+import model.Direction;
+
+/**
+ * MoveGenerator 在压缩棋盘（见 {@link BoardCodec}）上生成合法移动。
+ * 方块形状由 ID 推断：7 为 2×2，2 为横向 1×2，3~6 按相邻同 ID 格判断横竖，1 为 1×1。
+ * 一次移动被编码为 {@code 左上角格 * 4 + 方向序号}。
+ */
+public final class MoveGenerator {
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final int width;
+    private final int height;
+    private final int cells;
+
+    public MoveGenerator(int width, int height) {
+        if (!BoardCodec.fits(width, height)) {
+            throw new IllegalArgumentException("Board " + width + "x" + height + " does not fit in a long");
+        }
+        this.width = width;
+        this.height = height;
+        this.cells = width * height;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /** 单个棋盘最多可能产生的移动数，用于分配输出数组。 */
+    public int maxMoves() {
+        return cells * DIRECTIONS.length;
+    }
+
+    public static int encodeMove(int cell, Direction direction) {
+        return cell * 4 + direction.ordinal();
+    }
+
+    public static int cellOf(int move) {
+        return move >>> 2;
+    }
+
+    public static Direction directionOf(int move) {
+        return DIRECTIONS[move & 3];
+    }
+
+    /** 撤销 move 的移动：方块从新位置沿相反方向移回。 */
+    public int inverse(int move) {
+        Direction d = directionOf(move);
+        int moved = cellOf(move) + d.getRow() * width + d.getCol();
+        return moved * 4 + ((move + 2) & 3);
+    }
+
+    /**
+     * 展开 board 的所有后继，写入 outBoards/outMoves，返回后继数量。
+     * outMoves 可以为 null。
+     */
+    public int expand(long board, long[] outBoards, int[] outMoves) {
+        int count = 0;
+        int seen = 0;
+        for (int cell = 0; cell < cells; cell++) {
+            if ((seen & (1 << cell)) != 0) continue;
+            int id = BoardCodec.get(board, cell);
+            if (id == 0) continue;
+            int row = cell / width;
+            int col = cell % width;
+            int h = pieceHeight(board, id, row, col);
+            int w = pieceWidth(board, id, row, col);
+            long pieceMask = 0;
+            for (int r = 0; r < h; r++) {
+                for (int c = 0; c < w; c++) {
+                    int covered = cell + r * width + c;
+                    seen |= 1 << covered;
+                    pieceMask |= BoardCodec.cellMask(covered);
+                }
+            }
+            for (Direction d : DIRECTIONS) {
+                int newRow = row + d.getRow();
+                int newCol = col + d.getCol();
+                if (newRow < 0 || newCol < 0 || newRow + h > height || newCol + w > width) continue;
+                long next = shiftPiece(board, pieceMask, d);
+                if (next != 0) {
+                    outBoards[count] = next;
+                    if (outMoves != null) outMoves[count] = encodeMove(cell, d);
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /** 在 board 上执行一个已编码的移动；不合法时返回 0。 */
+    public long apply(long board, int move) {
+        int cell = cellOf(move);
+        Direction d = directionOf(move);
+        int id = BoardCodec.get(board, cell);
+        if (id == 0) return 0;
+        int row = cell / width;
+        int col = cell % width;
+        int h = pieceHeight(board, id, row, col);
+        int w = pieceWidth(board, id, row, col);
+        int newRow = row + d.getRow();
+        int newCol = col + d.getCol();
+        if (newRow < 0 || newCol < 0 || newRow + h > height || newCol + w > width) return 0;
+        long pieceMask = 0;
+        for (int r = 0; r < h; r++) {
+            for (int c = 0; c < w; c++) {
+                pieceMask |= BoardCodec.cellMask(cell + r * width + c);
+            }
+        }
+        return shiftPiece(board, pieceMask, d);
+    }
+
+    // 整块平移：清掉原位置，再把方块的位段整体移位；与其他方块重叠时返回 0
+    private long shiftPiece(long board, long pieceMask, Direction d) {
+        int delta = (d.getRow() * width + d.getCol()) * BoardCodec.BITS_PER_CELL;
+        long others = board & ~pieceMask;
+        long movedMask = delta > 0 ? pieceMask << delta : pieceMask >>> -delta;
+        if ((movedMask & others) != 0) return 0;
+        long piece = board & pieceMask;
+        long moved = delta > 0 ? piece << delta : piece >>> -delta;
+        return others | moved;
+    }
+
+    int pieceHeight(long board, int id, int row, int col) {
+        if (id == 7) return 2;
+        if (id >= 3 && id <= 6) {
+            return row + 1 < height && BoardCodec.get(board, (row + 1) * width + col) == id ? 2 : 1;
+        }
+        return 1;
+    }
+
+    int pieceWidth(long board, int id, int row, int col) {
+        if (id == 7 || id == 2) return 2;
+        if (id >= 3 && id <= 6) {
+            boolean vertical = row + 1 < height && BoardCodec.get(board, (row + 1) * width + col) == id;
+            return !vertical && col + 1 < width && BoardCodec.get(board, row * width + col + 1) == id ? 2 : 1;
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,72 @@
+package controller.solver;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+
+/**
+ * 堆外实现：由固定大小的直接缓冲区分块串成，读完的块立即释放，
+ * 因此前沿再大也不会进入 Java 堆、不会拉长 GC 停顿。
+ */
+final class OffHeapFrontierQueue implements FrontierQueue {
+    private static final int CHUNK_LONGS = 1 << 17; // 每块 1 MB
+
+    private final ArrayDeque<ByteBuffer> chunks = new ArrayDeque<>();
+    private ByteBuffer tail;
+    private int tailCount = CHUNK_LONGS;
+    private int headIndex;
+    private long size;
+
+    @Override
+    public void add(long board) {
+        if (tailCount == CHUNK_LONGS) {
+            tail = ByteBuffer.allocateDirect(CHUNK_LONGS * Long.BYTES).order(ByteOrder.nativeOrder());
+            chunks.addLast(tail);
+            tailCount = 0;
+        }
+        tail.putLong(tailCount * Long.BYTES, board);
+        tailCount++;
+        size++;
+    }
+
+    @Override
+    public long poll() {
+        if (size == 0) throw new IllegalStateException("Queue is empty");
+        ByteBuffer head = chunks.peekFirst();
+        long board = head.getLong(headIndex * Long.BYTES);
+        headIndex++;
+        size--;
+        if (headIndex == CHUNK_LONGS) {
+            chunks.pollFirst();
+            if (head == tail) {
+                tail = null;
+                tailCount = CHUNK_LONGS;
+            }
+            DirectMemory.free(head);
+            headIndex = 0;
+        }
+        return board;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public void close() {
+        for (ByteBuffer chunk : chunks) {
+            DirectMemory.free(chunk);
+        }
+        chunks.clear();
+        tail = null;
+        tailCount = CHUNK_LONGS;
+        headIndex = 0;
+        size = 0;
+    }
+}
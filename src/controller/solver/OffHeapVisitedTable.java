@@ -0,0 +1,93 @@
+package controller.solver;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 堆外实现：键和值都放在直接缓冲区里，扩容时旧缓冲区立即释放。
+ * 表本身在堆上只占几个对象头，GC 扫描成本与状态数无关。
+ */
+final class OffHeapVisitedTable implements VisitedTable {
+    private ByteBuffer keys;
+    private ByteBuffer values;
+    private int capacity;
+    private long size;
+
+    OffHeapVisitedTable() {
+        allocate(1 << 16);
+    }
+
+    @Override
+    public boolean putIfAbsent(long key, int value) {
+        if (key == 0) throw new IllegalArgumentException("Key 0 is reserved");
+        if ((size + 1) * 2 > capacity) grow();
+        int mask = capacity - 1;
+        int slot = (int) VisitedTable.mix(key) & mask;
+        long existing;
+        while ((existing = keys.getLong(slot * Long.BYTES)) != 0) {
+            if (existing == key) return false;
+            slot = (slot + 1) & mask;
+        }
+        keys.putLong(slot * Long.BYTES, key);
+        values.put(slot, (byte) value);
+        size++;
+        return true;
+    }
+
+    @Override
+    public int get(long key) {
+        int mask = capacity - 1;
+        int slot = (int) VisitedTable.mix(key) & mask;
+        long existing;
+        while ((existing = keys.getLong(slot * Long.BYTES)) != 0) {
+            if (existing == key) return values.get(slot) & 0xFF;
+            slot = (slot + 1) & mask;
+        }
+        return ABSENT;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public void close() {
+        if (keys != null) {
+            DirectMemory.free(keys);
+            DirectMemory.free(values);
+            keys = null;
+            values = null;
+        }
+        capacity = 0;
+        size = 0;
+    }
+
+    private void allocate(int newCapacity) {
+        // allocateDirect 保证内容清零，0 即空槽
+        keys = ByteBuffer.allocateDirect(newCapacity * Long.BYTES).order(ByteOrder.nativeOrder());
+        values = ByteBuffer.allocateDirect(newCapacity);
+        capacity = newCapacity;
+    }
+
+    private void grow() {
+        ByteBuffer oldKeys = keys;
+        ByteBuffer oldValues = values;
+        int oldCapacity = capacity;
+        if (oldCapacity > (Integer.MAX_VALUE / Long.BYTES) / 2) {
+            throw new IllegalStateException("Visited table too large");
+        }
+        allocate(oldCapacity * 2);
+        int mask = capacity - 1;
+        for (int i = 0; i < oldCapacity; i++) {
+            long key = oldKeys.getLong(i * Long.BYTES);
+            if (key == 0) continue;
+            int slot = (int) VisitedTable.mix(key) & mask;
+            while (keys.getLong(slot * Long.BYTES) != 0) slot = (slot + 1) & mask;
+            keys.putLong(slot * Long.BYTES, key);
+            values.put(slot, oldValues.get(i));
+        }
+        DirectMemory.free(oldKeys);
+        DirectMemory.free(oldValues);
+    }
+}
@@ -0,0 +1,298 @@
+package controller.solver;
+
+import model.Board;
+import model.Goal;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 并行 IDA*：每一轮迭代按 f = g + h 的阈值做深度优先搜索，
+ * 队列里待窃取的任务不多时把当前节点的子树拆成任务交给 ForkJoinPool，空闲线程通过工作窃取分担负载。
+ * 所有线程共享一张无锁、定长的置换表：同一轮内以不更短的 g 再次到达的局面直接剪掉；
+ * 子树搜完后把回传的剩余步数下界记在表里，下一轮起以它和估价中较大者作为 h，不必每轮从原估价重新逼近。
+ * 任一线程在当前阈值下到达目标即通知其余线程停止。内存占用只有置换表和递归栈。
+ */
+public final class ParallelIdaStarSolver implements SolverStrategy {
+    // 待窃取的任务少于该值时才拆分；f 离阈值不到 MIN_SPLIT_SLACK 的子树太小，留在当前线程
+    private static final int SURPLUS_LIMIT = 2;
+    private static final int MIN_SPLIT_SLACK = 8;
+    private static final int DEFAULT_TABLE_BITS = 22;
+
+    private final ForkJoinPool pool;
+    private final int tableBits;
+
+    public ParallelIdaStarSolver() {
+        this(ForkJoinPool.commonPool(), DEFAULT_TABLE_BITS);
+    }
+
+    public ParallelIdaStarSolver(ForkJoinPool pool, int tableBits) {
+        this.pool = pool;
+        this.tableBits = tableBits;
+    }
+
+    @Override
+    public String name() {
+        return "ida-parallel";
+    }
+
+    @Override
+    public boolean isOptimal() {
+        return true;
+    }
+
+    @Override
+    public SolverResult solve(Board board, Goal goal) {
+        return solve(board, goal, AStarSolver.heuristicFor(board, goal));
+    }
+
+    /** 使用指定估价求解；估价必须可采纳才能保证最短。 */
+    public SolverResult solve(Board board, Goal goal, Heuristic heuristic) {
+        long startTime = System.nanoTime();
+        Search search = new Search(new MoveGenerator(board.getWidth(), board.getHeight()), heuristic,
+                goal.mask(board.getWidth()), goal.value(board.getWidth()), new TranspositionTable(tableBits),
+                pool.getParallelism() > 1);
+        long start = board.getCells();
+        int bound = heuristic.estimate(start);
+        while (bound <= TranspositionTable.VALUE_LIMIT) {
+            search.prepare(bound);
+            pool.invoke(new SubtreeTask(search, start, 0L, 0, new int[bound + 1]));
+            int[] path = search.solution.get();
+            if (path != null) {
+                return new SolverResult(name(), true, true, path, search.expanded.get(), System.nanoTime() - startTime);
+            }
+            bound = search.nextBound.get();
+        }
+        return SolverResult.unsolved(name(), search.expanded.get(), System.nanoTime() - startTime);
+    }
+
+    // 一次求解中所有线程共享的状态
+    private static final class Search {
+        final MoveGenerator generator;
+        final Heuristic heuristic;
+        final long goalMask;
+        final long goalValue;
+        final TranspositionTable table;
+        final AtomicBoolean found = new AtomicBoolean();
+        final AtomicReference<int[]> solution = new AtomicReference<>();
+        final AtomicInteger nextBound = new AtomicInteger();
+        final AtomicLong expanded = new AtomicLong();
+        // 池里只有一个线程（或任务直接在调用线程运行）时不拆分
+        final boolean parallel;
+        int bound;
+
+        Search(MoveGenerator generator, Heuristic heuristic, long goalMask, long goalValue, TranspositionTable table,
+               boolean parallel) {
+            this.generator = generator;
+            this.heuristic = heuristic;
+            this.goalMask = goalMask;
+            this.goalValue = goalValue;
+            this.table = table;
+            this.parallel = parallel;
+        }
+
+        void prepare(int bound) {
+            this.bound = bound;
+            nextBound.set(Integer.MAX_VALUE);
+            table.nextGeneration();
+        }
+
+        void offerBound(int f) {
+            int current;
+            while (f < (current = nextBound.get()) && !nextBound.compareAndSet(current, f)) {
+                // 重试
+            }
+        }
+
+        void finish(int[] path) {
+            if (found.compareAndSet(false, true)) solution.set(path);
+        }
+    }
+
+    /**
+     * 以 board 为根、深度为 g 的一棵子树，moves[0..g) 为从起点到 board 的走法。
+     * 返回经过 board 的解长的下界，供置换表记录。
+     */
+    @SuppressWarnings("serial")
+    private static final class SubtreeTask extends RecursiveTask<Integer> {
+        private final Search search;
+        private final long board;
+        private final long parent;
+        private final int g;
+        private final int[] moves;
+        private long[][] boards;
+        private int[][] buffers;
+        private long expanded;
+
+        SubtreeTask(Search search, long board, long parent, int g, int[] moves) {
+            this.search = search;
+            this.board = board;
+            this.parent = parent;
+            this.g = g;
+            this.moves = moves;
+        }
+
+        @Override
+        protected Integer compute() {
+            // 每层一组缓冲区，到达该层时才分配，之后串行递归不再分配
+            int levels = search.bound - g + 1;
+            boards = new long[levels][];
+            buffers = new int[levels][];
+            int result = dfs(board, parent, g);
+            search.expanded.addAndGet(expanded);
+            return result;
+        }
+
+        /*
+         * 本轮没有找到解时，所有代价不超过阈值的路径都已搜过，于是任一局面的 g* + h* 都大于阈值；
+         * 被置换表剪掉的分支因此可以回传“阈值 + 1”，由此得到的下界在本轮结束后才生效，不影响本轮的完备性。
+         */
+        private int dfs(long current, long parent, int depth) {
+            if (search.found.get()) return Integer.MAX_VALUE;
+            TranspositionTable table = search.table;
+            int bound = search.bound;
+            int f = depth + Math.max(search.heuristic.estimate(current), table.lowerBound(current));
+            if (f > bound) {
+                search.offerBound(f);
+                return f;
+            }
+            if ((current & search.goalMask) == search.goalValue) {
+                search.finish(Arrays.copyOf(moves, depth));
+                return f;
+            }
+            // 本轮已以不更深的 g 到达过，由那次搜索负责
+            if (!table.enter(current, depth)) return bound + 1;
+            int level = depth - g;
+            if (boards[level] == null) {
+                boards[level] = new long[search.generator.maxMoves()];
+                buffers[level] = new int[search.generator.maxMoves()];
+            }
+            long[] next = boards[level];
+            int[] nextMoves = buffers[level];
+            int n = search.generator.expand(current, next, nextMoves);
+            expanded++;
+            int min = Integer.MAX_VALUE;
+            if (search.parallel && bound - f >= MIN_SPLIT_SLACK && getSurplusQueuedTaskCount() < SURPLUS_LIMIT) {
+                SubtreeTask[] children = new SubtreeTask[n];
+                int count = 0;
+                for (int i = 0; i < n; i++) {
+                    if (next[i] == parent) continue;
+                    int[] path = moves.clone();
+                    path[depth] = nextMoves[i];
+                    children[count++] = new SubtreeTask(search, next[i], current, depth + 1, path);
+                }
+                for (int i = count - 1; i > 0; i--) children[i].fork();
+                // 第一棵子树在当前线程搜索，其余等待被窃取
+                if (count > 0) min = children[0].compute();
+                for (int i = 1; i < count; i++) min = Math.min(min, children[i].join());
+            } else {
+                for (int i = 0; i < n && !search.found.get(); i++) {
+                    if (next[i] == parent) continue; // 走回头路，必被置换表剪掉
+                    moves[depth] = nextMoves[i];
+                    min = Math.min(min, dfs(next[i], current, depth + 1));
+                }
+            }
+            if (!search.found.get() && min != Integer.MAX_VALUE) table.raise(current, min - depth);
+            return min;
+        }
+    }
+
+    /**
+     * 无锁定长置换表，两组槽位共用同一个槽号。
+     * 深度槽：高 40 位为局面键的摘要，中间 14 位为迭代代号，低 10 位为本轮到达深度；
+     * 每轮迭代换一个代号，旧条目自然失效，不必清表。
+     * 下界槽：高 32 位为摘要，其后 12 位为写入时的代号，再各 10 位为已生效的下界和本轮新得的下界；
+     * 本轮新得的下界到下一轮才生效。
+     * 槽位冲突时直接覆盖，只会少剪枝；摘要相同而局面不同的概率可以忽略。
+     */
+    static final class TranspositionTable {
+        static final int VALUE_LIMIT = (1 << 10) - 1;
+        private static final int VALUE_BITS = 10;
+        private static final long VALUE_MASK = VALUE_LIMIT;
+        private static final int GENERATION_BITS = 12;
+        private static final long GENERATION_LIMIT = (1L << GENERATION_BITS) - 1;
+        private static final long DEPTH_KEY_MASK = ~VALUE_MASK;
+        private static final long DEPTH_TAG_MASK = -1L << (VALUE_BITS + GENERATION_BITS + 2);
+        private static final int BOUND_GENERATION_SHIFT = 2 * VALUE_BITS;
+        private static final long BOUND_TAG_MASK = -1L << (BOUND_GENERATION_SHIFT + GENERATION_BITS);
+
+        private final AtomicLongArray depths;
+        private final AtomicLongArray bounds;
+        private final int mask;
+        private long generation;
+
+        TranspositionTable(int bits) {
+            this.depths = new AtomicLongArray(1 << bits);
+            this.bounds = new AtomicLongArray(1 << bits);
+            this.mask = (1 << bits) - 1;
+        }
+
+        /** 开始新一轮迭代；代号用尽时才真正清表（连同下界）。 */
+        void nextGeneration() {
+            generation = (generation + 1) & GENERATION_LIMIT;
+            if (generation == 0) {
+                for (int i = 0; i < depths.length(); i++) {
+                    depths.set(i, 0);
+                    bounds.set(i, 0);
+                }
+                generation = 1;
+            }
+        }
+
+        /** 以 depth 到达 board：本轮没有更浅（或同样浅）的记录时写入并返回 true。 */
+        boolean enter(long board, int depth) {
+            long hash = VisitedTable.mix(board);
+            int slot = (int) hash & mask;
+            long key = (hash & DEPTH_TAG_MASK) | generation << VALUE_BITS;
+            long entry = key | Math.min(depth, VALUE_LIMIT);
+            while (true) {
+                long current = depths.get(slot);
+                if ((current & DEPTH_KEY_MASK) == key && (current & VALUE_MASK) <= depth) return false;
+                if (depths.compareAndSet(slot, current, entry)) return true;
+            }
+        }
+
+        /** 已生效的剩余步数下界，没有时为 0。 */
+        int lowerBound(long board) {
+            long hash = VisitedTable.mix(board);
+            long current = bounds.get((int) hash & mask);
+            if ((current & BOUND_TAG_MASK) != (hash & BOUND_TAG_MASK)) return 0;
+            int committed = (int) (current >>> VALUE_BITS & VALUE_MASK);
+            return generationOf(current) == generation ? committed : Math.max(committed, (int) (current & VALUE_MASK));
+        }
+
+        /** 记下本轮得到的剩余步数下界，下一轮起生效。 */
+        void raise(long board, int bound) {
+            long hash = VisitedTable.mix(board);
+            int slot = (int) hash & mask;
+            long tag = hash & BOUND_TAG_MASK;
+            long value = Math.min(bound, VALUE_LIMIT);
+            while (true) {
+                long current = bounds.get(slot);
+                long committed = 0;
+                long pending = 0;
+                if ((current & BOUND_TAG_MASK) == tag) {
+                    committed = current >>> VALUE_BITS & VALUE_MASK;
+                    pending = current & VALUE_MASK;
+                    if (generationOf(current) != generation) {
+                        committed = Math.max(committed, pending);
+                        pending = 0;
+                    }
+                }
+                if (pending >= value && generationOf(current) == generation) return;
+                long entry = tag | generation << BOUND_GENERATION_SHIFT | committed << VALUE_BITS | Math.max(pending, value);
+                if (bounds.compareAndSet(slot, current, entry)) return;
+            }
+        }
+
+        private static long generationOf(long entry) {
+            return entry >>> BOUND_GENERATION_SHIFT & GENERATION_LIMIT;
+        }
+    }
+}
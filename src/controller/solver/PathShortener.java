@@ -0,0 +1,176 @@
+package controller.solver;
+
+import model.Board;
+
+import java.util.Arrays;
+
+/**
+ * 解路径后处理：把贪心等非最优求解器给出的绕路解压短。
+ * 先按局面去掉路径上的回环，再从每个路径点做有界的局部 BFS，
+ * 若能用更少的步数到达路径后面的某一点，就用这段捷径替换中间部分。
+ * 一遍扫完还有变短就再扫一遍；一遍没有收获时把窗口加倍（访问上限随之同比放大），直到窗口达到上限。
+ * 结果不保证最短，但代价只与路径长度和窗口大小有关，不需要完整搜索。
+ * 交互场景（如提示）用 {@link #singlePass}：窗口固定、只扫一遍，代价不超过“路径长度 × 访问上限”。
+ */
+public final class PathShortener {
+    /** 默认局部 BFS 的最大深度。 */
+    public static final int DEFAULT_WINDOW = 8;
+    /** 默认每次局部 BFS 最多访问的局面数。 */
+    public static final int DEFAULT_NODE_BUDGET = 20_000;
+    /** 默认窗口加倍的上限。 */
+    public static final int DEFAULT_MAX_WINDOW = 32;
+
+    private final MoveGenerator generator;
+    private final int window;
+    private final int nodeBudget;
+    private final int maxWindow;
+    private final int maxPasses;
+    private final long[] boards;
+    private final int[] moves;
+
+    public PathShortener(int width, int height) {
+        this(width, height, DEFAULT_WINDOW, DEFAULT_NODE_BUDGET, DEFAULT_MAX_WINDOW);
+    }
+
+    /** 窗口固定为 window，不再加倍。 */
+    public PathShortener(int width, int height, int window, int nodeBudget) {
+        this(width, height, window, nodeBudget, window);
+    }
+
+    public PathShortener(int width, int height, int window, int nodeBudget, int maxWindow) {
+        this(width, height, window, nodeBudget, maxWindow, Integer.MAX_VALUE);
+    }
+
+    private PathShortener(int width, int height, int window, int nodeBudget, int maxWindow, int maxPasses) {
+        if (window < 1 || nodeBudget < 1) {
+            throw new IllegalArgumentException("Window and node budget must be positive");
+        }
+        if (maxWindow < window) throw new IllegalArgumentException("Max window is smaller than the window");
+        this.generator = new MoveGenerator(width, height);
+        this.window = window;
+        this.nodeBudget = nodeBudget;
+        this.maxWindow = maxWindow;
+        this.maxPasses = maxPasses;
+        this.boards = new long[generator.maxMoves()];
+        this.moves = new int[generator.maxMoves()];
+    }
+
+    /** 窗口固定为 window、只扫一遍的压短器。 */
+    public static PathShortener singlePass(int width, int height, int window, int nodeBudget) {
+        return new PathShortener(width, height, window, nodeBudget, window, 1);
+    }
+
+    /** 压短一次求解的结果；未解出或已是最短解时原样返回。 */
+    public SolverResult shorten(Board board, SolverResult result) {
+        if (!result.isSolved() || result.isOptimal()) return result;
+        long startTime = System.nanoTime();
+        int[] path = shorten(board.getCells(), result.getPath());
+        return new SolverResult(result.getStrategy(), true, false, path, result.getExpanded(),
+                result.getElapsedNanos() + System.nanoTime() - startTime);
+    }
+
+    /** 从 start 出发走 path 与走返回的路径到达同一终点，且后者不会更长。 */
+    public int[] shorten(long start, int[] path) {
+        int[] line = path;
+        int currentWindow = window;
+        long currentBudget = nodeBudget;
+        for (int passes = 1; ; passes++) {
+            int before = line.length;
+            line = pass(start, line, currentWindow, (int) Math.min(Integer.MAX_VALUE, currentBudget));
+            if (passes >= maxPasses) return line;
+            if (line.length < before) continue;
+            if (currentWindow >= maxWindow) return line;
+            currentBudget = currentBudget * Math.min(maxWindow, currentWindow * 2) / currentWindow;
+            currentWindow = Math.min(maxWindow, currentWindow * 2);
+        }
+    }
+
+    // 去掉回环后沿路径扫一遍，逐点尝试捷径
+    private int[] pass(long start, int[] path, int window, int nodeBudget) {
+        long[] states = statesOf(start, path);
+        int[] line = removeLoops(states, path);
+        states = statesOf(start, line);
+        LongIntMap index = indexOf(states);
+        for (int i = 0; i + 1 < line.length; i++) {
+            int[] shortcut = new int[1];
+            int[] segment = localSearch(states, index, i, window, nodeBudget, shortcut);
+            if (segment == null) continue;
+            int target = shortcut[0];
+            int[] spliced = new int[line.length - (target - i) + segment.length];
+            System.arraycopy(line, 0, spliced, 0, i);
+            System.arraycopy(segment, 0, spliced, i, segment.length);
+            System.arraycopy(line, target, spliced, i + segment.length, line.length - target);
+            line = spliced;
+            states = statesOf(start, line);
+            index = indexOf(states);
+        }
+        return line;
+    }
+
+    private long[] statesOf(long start, int[] path) {
+        long[] states = new long[path.length + 1];
+        states[0] = start;
+        for (int i = 0; i < path.length; i++) {
+            states[i + 1] = generator.apply(states[i], path[i]);
+            if (states[i + 1] == 0) {
+                throw new IllegalArgumentException("Illegal move at step " + i);
+            }
+        }
+        return states;
+    }
+
+    // 每到一个局面就直接跳到它在路径上最后一次出现的位置，中间的回环随之消失
+    private static int[] removeLoops(long[] states, int[] path) {
+        LongIntMap last = new LongIntMap();
+        for (int k = 0; k < states.length; k++) last.put(states[k], k);
+        int[] result = new int[path.length];
+        int length = 0;
+        int k = last.get(states[0]);
+        while (k < path.length) {
+            result[length++] = path[k];
+            k = last.get(states[k + 1]);
+        }
+        return Arrays.copyOf(result, length);
+    }
+
+    private static LongIntMap indexOf(long[] states) {
+        LongIntMap index = new LongIntMap();
+        for (int k = 0; k < states.length; k++) index.put(states[k], k);
+        return index;
+    }
+
+    // 从 states[from] 做有界分层 BFS，找省步最多的路径点；shortcut[0] 返回该点下标
+    private int[] localSearch(long[] states, LongIntMap index, int from, int window, int nodeBudget, int[] shortcut) {
+        LongIntMap incoming = new LongIntMap();
+        incoming.put(states[from], SearchPaths.ROOT);
+        long[] layer = {states[from]};
+        int layerSize = 1;
+        int bestTarget = -1;
+        int bestGain = 0;
+        for (int depth = 1; depth <= window && layerSize > 0; depth++) {
+            long[] next = new long[Math.max(16, layerSize * 4)];
+            int nextSize = 0;
+            for (int l = 0; l < layerSize; l++) {
+                int n = generator.expand(layer[l], boards, moves);
+                for (int m = 0; m < n; m++) {
+                    long child = boards[m];
+                    if (incoming.get(child) != LongIntMap.ABSENT) continue;
+                    incoming.put(child, moves[m]);
+                    int target = index.get(child);
+                    if (target > from && target - from - depth > bestGain) {
+                        bestGain = target - from - depth;
+                        bestTarget = target;
+                    }
+                    if (nextSize == next.length) next = Arrays.copyOf(next, nextSize * 2);
+                    next[nextSize++] = child;
+                }
+            }
+            layer = next;
+            layerSize = nextSize;
+            if (incoming.size() > nodeBudget) break;
+        }
+        if (bestTarget < 0) return null;
+        shortcut[0] = bestTarget;
+        return SearchPaths.reconstruct(generator, incoming::get, states[bestTarget]);
+    }
+}
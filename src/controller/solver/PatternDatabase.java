@@ -0,0 +1,254 @@
+package controller.solver;
+
+import model.BoardCodec;
+import model.Goal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * 模式数据库：把棋盘抽象为“曹操 + 选定的若干种方块”，其余方块视为空格，
+ * 在抽象空间里用逆向 BFS 算出每个抽象局面到目标的精确步数。
+ * 具体棋盘的每一步在抽象空间里要么是一步、要么不动，所以查表结果是可采纳的下界。
+ *
+ * 文件格式（大端）：magic, version, width, height, patternMask, goalMask, goalValue, count,
+ * 之后是按升序排列的键的变长差分编码，最后是 count 个字节的距离。
+ */
+public final class PatternDatabase {
+    private static final int MAGIC = 0x4B504442; // "KPDB"
+    private static final int VERSION = 1;
+
+    /** 默认模式：曹操、关羽和四员大将，去掉士兵。 */
+    public static final int DEFAULT_PATTERN = patternOf(2, 3, 4, 5, 6, 7);
+
+    private static final FileCache<PatternDatabase> LOADED = new FileCache<>(PatternDatabase::read);
+
+    private final int width;
+    private final int height;
+    private final int patternMask;
+    private final long goalMask;
+    private final long goalValue;
+    private final long[] keys;
+    private final byte[] distances;
+
+    private PatternDatabase(int width, int height, int patternMask, long goalMask, long goalValue,
+                            long[] keys, byte[] distances) {
+        this.width = width;
+        this.height = height;
+        this.patternMask = patternMask;
+        this.goalMask = goalMask;
+        this.goalValue = goalValue;
+        this.keys = keys;
+        this.distances = distances;
+    }
+
+    /** 把方块 ID 列表转成模式位掩码（第 id 位表示保留该 ID）。 */
+    public static int patternOf(int... ids) {
+        int mask = 0;
+        for (int id : ids) mask |= 1 << id;
+        return mask;
+    }
+
+    public int size() {
+        return keys.length;
+    }
+
+    public int getPatternMask() {
+        return patternMask;
+    }
+
+    /** 具体棋盘的抽象距离；抽象局面不在表中时返回 0（仍是下界）。 */
+    public int distance(long board) {
+        int index = Arrays.binarySearch(keys, abstractOf(board, width * height, patternMask));
+        return index < 0 ? 0 : distances[index] & 0xFF;
+    }
+
+    /** 把不在模式中的格子清空。 */
+    static long abstractOf(long board, int cells, int patternMask) {
+        long result = board;
+        for (int cell = 0; cell < cells; cell++) {
+            if ((patternMask & (1 << BoardCodec.get(board, cell))) == 0) {
+                result &= ~BoardCodec.cellMask(cell);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 构建模式数据库：先从各起点的抽象局面出发正向枚举可达的抽象空间，
+     * 再从其中的目标局面出发做逆向 BFS。目标涉及的方块会自动加入模式。
+     */
+    public static PatternDatabase build(int width, int height, Goal goal, int patternMask, long... starts) {
+        for (int t = 0; t < goal.targetCount(); t++) {
+            patternMask |= 1 << goal.targetId(t);
+        }
+        int cells = width * height;
+        long goalMask = goal.mask(width);
+        long goalValue = goal.value(width);
+        MoveGenerator generator = new MoveGenerator(width, height);
+        long[] next = new long[generator.maxMoves()];
+
+        // 正向枚举抽象空间
+        LongIntMap index = new LongIntMap();
+        long[] states = new long[1 << 12];
+        int count = 0;
+        for (long start : starts) {
+            long a = abstractOf(start, cells, patternMask);
+            if (index.get(a) != LongIntMap.ABSENT) continue;
+            if (count == states.length) states = Arrays.copyOf(states, count * 2);
+            index.put(a, count);
+            states[count++] = a;
+        }
+        for (int head = 0; head < count; head++) {
+            int n = generator.expand(states[head], next, null);
+            for (int i = 0; i < n; i++) {
+                if (index.get(next[i]) != LongIntMap.ABSENT) continue;
+                if (count == states.length) states = Arrays.copyOf(states, count * 2);
+                index.put(next[i], count);
+                states[count++] = next[i];
+            }
+        }
+
+        // 逆向 BFS：所有目标局面距离为 0，移动可逆，沿邻居逐层扩展
+        byte[] dist = new byte[count];
+        Arrays.fill(dist, (byte) 0xFF);
+        int[] queue = new int[count];
+        int tail = 0;
+        for (int i = 0; i < count; i++) {
+            if ((states[i] & goalMask) == goalValue) {
+                dist[i] = 0;
+                queue[tail++] = i;
+            }
+        }
+        for (int head = 0; head < tail; head++) {
+            int s = queue[head];
+            int d = dist[s] & 0xFF;
+            int n = generator.expand(states[s], next, null);
+            for (int i = 0; i < n; i++) {
+                int t = index.get(next[i]);
+                if ((dist[t] & 0xFF) != 0xFF) continue;
+                dist[t] = (byte) Math.min(d + 1, 0xFE);
+                queue[tail++] = t;
+            }
+        }
+
+        // 按键排序后存储，查表用二分；不可达目标的局面记为 0
+        long[] sortedKeys = Arrays.copyOf(states, count);
+        Arrays.sort(sortedKeys);
+        byte[] sortedDist = new byte[count];
+        for (int i = 0; i < count; i++) {
+            byte d = dist[index.get(sortedKeys[i])];
+            sortedDist[i] = d == (byte) 0xFF ? 0 : d;
+        }
+        return new PatternDatabase(width, height, patternMask, goalMask, goalValue, sortedKeys, sortedDist);
+    }
+
+    /** 写入文件：先写临时文件再原子替换。 */
+    public void write(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path tmp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(width);
+            out.writeInt(height);
+            out.writeInt(patternMask);
+            out.writeLong(goalMask);
+            out.writeLong(goalValue);
+            out.writeInt(keys.length);
+            long previous = 0;
+            for (long key : keys) {
+                writeVarLong(out, key - previous);
+                previous = key;
+            }
+            out.write(distances);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static PatternDatabase read(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+        if (in.readInt() != MAGIC) throw new IOException("Not a pattern database");
+        int version = in.readInt();
+        if (version != VERSION) throw new IOException("Unsupported pattern database version " + version);
+        int width = in.readInt();
+        int height = in.readInt();
+        int patternMask = in.readInt();
+        long goalMask = in.readLong();
+        long goalValue = in.readLong();
+        int count = in.readInt();
+        long[] keys = new long[count];
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            previous += readVarLong(in);
+            keys[i] = previous;
+        }
+        byte[] distances = new byte[count];
+        in.readFully(distances);
+        return new PatternDatabase(width, height, patternMask, goalMask, goalValue, keys, distances);
+    }
+
+    /** 数据库所在目录，可用 -Dklotski.pdb.dir 指定。 */
+    public static Path directory() {
+        return Paths.get(System.getProperty("klotski.pdb.dir", "pdb"));
+    }
+
+    /**
+     * 文件名由尺寸、目标、模式和模式内各 ID 的数量决定，
+     * 方块组成相同的关卡共用一个文件。
+     */
+    public static String fileName(int width, int height, Goal goal, int patternMask, long board) {
+        for (int t = 0; t < goal.targetCount(); t++) {
+            patternMask |= 1 << goal.targetId(t);
+        }
+        int[] counts = new int[8];
+        for (int cell = 0; cell < width * height; cell++) {
+            counts[BoardCodec.get(board, cell)]++;
+        }
+        StringBuilder name = new StringBuilder();
+        name.append(width).append('x').append(height)
+                .append('-').append(Long.toHexString(goal.mask(width)))
+                .append('-').append(Long.toHexString(goal.value(width)))
+                .append('-').append(Integer.toHexString(patternMask)).append('-');
+        for (int id = 1; id < counts.length; id++) {
+            if ((patternMask & (1 << id)) != 0) name.append(counts[id]);
+        }
+        return name.append(".pdb").toString();
+    }
+
+    /** 惰性加载与 board 匹配的数据库，文件不变时只读一次盘；不存在或损坏时返回 null。 */
+    public static PatternDatabase lazyLoad(int width, int height, Goal goal, int patternMask, long board) {
+        return LOADED.get(directory().resolve(fileName(width, height, goal, patternMask, board)));
+    }
+
+    private static void writeVarLong(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
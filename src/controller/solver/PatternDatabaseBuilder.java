@@ -0,0 +1,57 @@
+package controller.solver;
+
+import model.BoardCodec;
+import model.Goal;
+import tool.tool;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 离线构建内置关卡的模式数据库，写入 {@link PatternDatabase#directory()}。
+ * 用法：{@code java controller.solver.PatternDatabaseBuilder [模式ID,...]}，默认模式见 {@link PatternDatabase#DEFAULT_PATTERN}。
+ * 方块组成相同的关卡合并为一个文件。
+ */
+public final class PatternDatabaseBuilder {
+    private PatternDatabaseBuilder() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        int pattern = PatternDatabase.DEFAULT_PATTERN;
+        if (args.length > 0) {
+            pattern = 0;
+            for (String id : args[0].split(",")) {
+                pattern |= 1 << Integer.parseInt(id.trim());
+            }
+        }
+
+        // 按文件名分组，同组关卡作为多个起点一起枚举
+        Map<String, List<String>> groups = new LinkedHashMap<>();
+        for (String level : tool.LEVEL_NAMES) {
+            int[][] matrix = tool.levelByName(level);
+            String file = PatternDatabase.fileName(matrix[0].length, matrix.length, tool.goalByName(level),
+                    pattern, BoardCodec.pack(matrix));
+            groups.computeIfAbsent(file, k -> new ArrayList<>()).add(level);
+        }
+
+        for (Map.Entry<String, List<String>> group : groups.entrySet()) {
+            List<String> levels = group.getValue();
+            int[][] first = tool.levelByName(levels.get(0));
+            Goal goal = tool.goalByName(levels.get(0));
+            long[] starts = new long[levels.size()];
+            for (int i = 0; i < starts.length; i++) {
+                starts[i] = BoardCodec.pack(tool.levelByName(levels.get(i)));
+            }
+            long begin = System.nanoTime();
+            PatternDatabase database = PatternDatabase.build(first[0].length, first.length, goal, pattern, starts);
+            Path file = PatternDatabase.directory().resolve(group.getKey());
+            database.write(file);
+            System.out.printf("%s: %d states, %.1f ms, levels %s%n",
+                    file, database.size(), (System.nanoTime() - begin) / 1e6, levels);
+        }
+    }
+}
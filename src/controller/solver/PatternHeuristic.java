@@ -0,0 +1,30 @@
+package controller.solver;
+
+import model.BoardCodec;
+
+/**
+ * 模式数据库估价，与曼哈顿距离取较大者；两者都是下界，取最大值仍然可采纳。
+ * 逐格表示的棋盘先压缩再查；装不进压缩棋盘时只用后备估价。
+ */
+public final class PatternHeuristic implements Heuristic {
+    private final PatternDatabase database;
+    private final Heuristic fallback;
+
+    public PatternHeuristic(PatternDatabase database, Heuristic fallback) {
+        this.database = database;
+        this.fallback = fallback;
+    }
+
+    @Override
+    public int estimate(long board) {
+        return Math.max(database.distance(board), fallback.estimate(board));
+    }
+
+    @Override
+    public int estimate(byte[] cells) {
+        if (cells.length > BoardCodec.MAX_CELLS) return fallback.estimate(cells);
+        long board = 0;
+        for (int cell = 0; cell < cells.length; cell++) board = BoardCodec.set(board, cell, cells[cell]);
+        return estimate(board);
+    }
+}
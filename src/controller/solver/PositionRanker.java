@@ -0,0 +1,283 @@
+package controller.solver;
+
+import model.BoardCodec;
+import model.Goal;
+
+import java.util.Arrays;
+
+/**
+ * 组合排名：把一关方块组合（多重集合）的每一种合法摆放映射到 [0, N) 中唯一的整数，反之亦然。
+ * <p>
+ * 按行优先逐格扫描，在每个尚未被覆盖的格子上依次尝试“空格、各类方块”，
+ * 排名等于所有字典序更小的摆放数之和。摆放数由带轮廓的动态规划给出：
+ * 状态为（当前格、后面 width+2 格的覆盖轮廓、各类方块剩余数量）。
+ */
+public final class PositionRanker {
+    private final int width;
+    private final int height;
+    private final int cells;
+    private final MoveGenerator generator;
+    // 方块种类，第 0 类为空格
+    private final int[] kindId;
+    private final int[] kindHeight;
+    private final int[] kindWidth;
+    private final int[] kindCount;
+    private final int[] radix;
+    private final int countStates;
+    private final int profileBits;
+    private final long[] memo;
+    private final long size;
+
+    private PositionRanker(int width, int height, int[] kindId, int[] kindHeight, int[] kindWidth, int[] kindCount) {
+        this.width = width;
+        this.height = height;
+        this.cells = width * height;
+        this.generator = new MoveGenerator(width, height);
+        this.kindId = kindId;
+        this.kindHeight = kindHeight;
+        this.kindWidth = kindWidth;
+        this.kindCount = kindCount;
+        this.radix = new int[kindId.length];
+        int states = 1;
+        for (int k = 0; k < kindId.length; k++) {
+            radix[k] = states;
+            states *= kindCount[k] + 1;
+        }
+        this.countStates = states;
+        this.profileBits = width + 2;
+        this.memo = new long[(cells + 1) * countStates << profileBits];
+        Arrays.fill(memo, -1);
+        this.size = count(0, 0, states - 1);
+    }
+
+    /** 以 board 中的方块组合建立排名器。 */
+    public static PositionRanker forBoard(int width, int height, long board) {
+        return fromKinds(width, height, kindsOf(width, height, board));
+    }
+
+    /**
+     * 按形状重新编号：1×1 为 1，横 1×2 为 2，竖 2×1 为 3，2×2 为 7；目标涉及的 ID 保持不变。
+     * 同形状的方块互换位置后走法和到目标的步数都不变，编号相同后这些摆放合为一个，
+     * 只是 ID 分配不同的关卡也就共用同一个排名器。
+     * 同 ID 的竖块（横块）在一列（一行）上相连时，按从上（左）起两两配对仍能唯一还原。
+     */
+    public static long canonical(int width, int height, long board, Goal goal) {
+        return canonical(new MoveGenerator(width, height), board, targetIds(goal));
+    }
+
+    /** 目标涉及的 ID 集合（按位），供 {@link #canonical(MoveGenerator, long, int)} 保留。 */
+    static int targetIds(Goal goal) {
+        int ids = 0;
+        for (int t = 0; t < goal.targetCount(); t++) ids |= 1 << goal.targetId(t);
+        return ids;
+    }
+
+    /** 同上，keepIds 中的 ID 保持不变；不分配对象，可在查表的热路径上调用。 */
+    static long canonical(MoveGenerator generator, long board, int keepIds) {
+        int width = generator.getWidth();
+        int cells = width * generator.getHeight();
+        long result = 0;
+        int seen = 0;
+        for (int cell = 0; cell < cells; cell++) {
+            if ((seen & (1 << cell)) != 0) continue;
+            int id = BoardCodec.get(board, cell);
+            if (id == 0) continue;
+            int row = cell / width;
+            int col = cell % width;
+            int h = generator.pieceHeight(board, id, row, col);
+            int w = generator.pieceWidth(board, id, row, col);
+            int shapeId = h == 2 ? (w == 2 ? 7 : 3) : (w == 2 ? 2 : 1);
+            int mapped = (keepIds & (1 << id)) != 0 || (keepIds & (1 << shapeId)) != 0 ? id : shapeId;
+            for (int r = 0; r < h; r++) {
+                for (int c = 0; c < w; c++) {
+                    seen |= 1 << (cell + r * width + c);
+                    result = BoardCodec.set(result, cell + r * width + c, mapped);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** 统计 board 中的方块组合，返回种类表（格式见 {@link #kinds()}），第 0 类为空格。 */
+    public static int[] kindsOf(int width, int height, long board) {
+        MoveGenerator generator = new MoveGenerator(width, height);
+        int cells = width * height;
+        // 种类键：id * 16 + height * 4 + width，空格为 0
+        int[] counts = new int[8 * 16];
+        int seen = 0;
+        for (int cell = 0; cell < cells; cell++) {
+            if ((seen & (1 << cell)) != 0) continue;
+            int id = BoardCodec.get(board, cell);
+            if (id == 0) {
+                counts[0]++;
+                continue;
+            }
+            int h = generator.pieceHeight(board, id, cell / width, cell % width);
+            int w = generator.pieceWidth(board, id, cell / width, cell % width);
+            for (int r = 0; r < h; r++) {
+                for (int c = 0; c < w; c++) seen |= 1 << (cell + r * width + c);
+            }
+            counts[id * 16 + h * 4 + w]++;
+        }
+        int kinds = 1;
+        for (int key = 1; key < counts.length; key++) if (counts[key] > 0) kinds++;
+        int[] result = new int[kinds * 4];
+        result[1] = 1;
+        result[2] = 1;
+        result[3] = counts[0];
+        int k = 4;
+        for (int key = 1; key < counts.length; key++) {
+            if (counts[key] == 0) continue;
+            result[k] = key / 16;
+            result[k + 1] = (key / 4) % 4;
+            result[k + 2] = key % 4;
+            result[k + 3] = counts[key];
+            k += 4;
+        }
+        return result;
+    }
+
+    /** 从序列化的种类表重建（见 {@link #kinds()}）。 */
+    public static PositionRanker fromKinds(int width, int height, int[] kinds) {
+        int n = kinds.length / 4;
+        int[] id = new int[n], h = new int[n], w = new int[n], count = new int[n];
+        for (int k = 0; k < n; k++) {
+            id[k] = kinds[4 * k];
+            h[k] = kinds[4 * k + 1];
+            w[k] = kinds[4 * k + 2];
+            count[k] = kinds[4 * k + 3];
+        }
+        return new PositionRanker(width, height, id, h, w, count);
+    }
+
+    /** 种类表：每类依次为 id, height, width, count。 */
+    public int[] kinds() {
+        int[] kinds = new int[kindId.length * 4];
+        for (int k = 0; k < kindId.length; k++) {
+            kinds[4 * k] = kindId[k];
+            kinds[4 * k + 1] = kindHeight[k];
+            kinds[4 * k + 2] = kindWidth[k];
+            kinds[4 * k + 3] = kindCount[k];
+        }
+        return kinds;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /** 合法摆放总数 N。 */
+    public long size() {
+        return size;
+    }
+
+    /** 摆放在 [0, N) 中的排名；方块组合不符时抛出异常。 */
+    public long rank(long board) {
+        long rank = 0;
+        int profile = 0;
+        int ci = countStates - 1;
+        for (int cell = 0; cell < cells; cell++, profile >>>= 1) {
+            if ((profile & 1) != 0) continue;
+            int actual = kindAt(board, cell);
+            for (int k = 0; k < actual; k++) {
+                if (remaining(ci, k) > 0 && fits(k, cell, profile)) {
+                    rank += count(cell + 1, (profile | shape(k)) >>> 1, ci - radix[k]);
+                }
+            }
+            if (remaining(ci, actual) == 0 || !fits(actual, cell, profile)) {
+                throw new IllegalArgumentException("Board does not match the ranked piece set");
+            }
+            profile |= shape(actual);
+            ci -= radix[actual];
+        }
+        return rank;
+    }
+
+    /** 排名对应的压缩棋盘。 */
+    public long unrank(long rank) {
+        if (rank < 0 || rank >= size) throw new IllegalArgumentException("Rank out of range: " + rank);
+        long board = 0;
+        int profile = 0;
+        int ci = countStates - 1;
+        for (int cell = 0; cell < cells; cell++, profile >>>= 1) {
+            if ((profile & 1) != 0) continue;
+            for (int k = 0; k < kindId.length; k++) {
+                if (remaining(ci, k) == 0 || !fits(k, cell, profile)) continue;
+                long c = count(cell + 1, (profile | shape(k)) >>> 1, ci - radix[k]);
+                if (rank < c) {
+                    board = place(board, k, cell);
+                    profile |= shape(k);
+                    ci -= radix[k];
+                    break;
+                }
+                rank -= c;
+            }
+        }
+        return board;
+    }
+
+    // 从 cell 开始、轮廓为 profile、剩余数量为 ci 时的摆放数
+    private long count(int cell, int profile, int ci) {
+        if (cell == cells) return ci == 0 && profile == 0 ? 1 : 0;
+        int index = ((cell * countStates) + ci) << profileBits | profile;
+        long cached = memo[index];
+        if (cached >= 0) return cached;
+        long total;
+        if ((profile & 1) != 0) {
+            total = count(cell + 1, profile >>> 1, ci);
+        } else {
+            total = 0;
+            for (int k = 0; k < kindId.length; k++) {
+                if (remaining(ci, k) > 0 && fits(k, cell, profile)) {
+                    total += count(cell + 1, (profile | shape(k)) >>> 1, ci - radix[k]);
+                }
+            }
+        }
+        memo[index] = total;
+        return total;
+    }
+
+    private int remaining(int ci, int k) {
+        return (ci / radix[k]) % (kindCount[k] + 1);
+    }
+
+    private boolean fits(int k, int cell, int profile) {
+        int row = cell / width;
+        int col = cell % width;
+        if (row + kindHeight[k] > height || col + kindWidth[k] > width) return false;
+        return (profile & shape(k)) == 0;
+    }
+
+    // 方块相对当前格覆盖的轮廓位
+    private int shape(int k) {
+        int bits = 0;
+        for (int r = 0; r < kindHeight[k]; r++) {
+            for (int c = 0; c < kindWidth[k]; c++) bits |= 1 << (r * width + c);
+        }
+        return bits;
+    }
+
+    private int kindAt(long board, int cell) {
+        int id = BoardCodec.get(board, cell);
+        if (id == 0) return 0;
+        int h = generator.pieceHeight(board, id, cell / width, cell % width);
+        int w = generator.pieceWidth(board, id, cell / width, cell % width);
+        for (int k = 1; k < kindId.length; k++) {
+            if (kindId[k] == id && kindHeight[k] == h && kindWidth[k] == w) return k;
+        }
+        throw new IllegalArgumentException("Board does not match the ranked piece set");
+    }
+
+    private long place(long board, int k, int cell) {
+        for (int r = 0; r < kindHeight[k]; r++) {
+            for (int c = 0; c < kindWidth[k]; c++) {
+                board = BoardCodec.set(board, cell + r * width + c, kindId[k]);
+            }
+        }
+        return board;
+    }
+}
@@ -0,0 +1,112 @@
+package controller.solver;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * 长时间逐层搜索的检查点：任务名、任务参数、层号、已访问集合和当前前沿。
+ * 写入时先落盘到临时文件并 fsync，再原子重命名，崩溃时磁盘上总有一份完整的检查点。
+ * <p>
+ * 文件格式（大端）：magic, version, 任务名(UTF), 参数个数, 参数, 层号, 已访问长度, 已访问, 前沿长度, 前沿。
+ */
+public final class SearchCheckpoint {
+    private static final int MAGIC = 0x4B434B50; // "KCKP"
+    private static final int VERSION = 1;
+
+    private final String job;
+    private final long[] params;
+    private final int layer;
+    private final long[] visited;
+    private final long[] frontier;
+
+    public SearchCheckpoint(String job, long[] params, int layer, long[] visited, long[] frontier) {
+        this.job = job;
+        this.params = params;
+        this.layer = layer;
+        this.visited = visited;
+        this.frontier = frontier;
+    }
+
+    public String getJob() {
+        return job;
+    }
+
+    public long[] getParams() {
+        return params;
+    }
+
+    /** 前沿所在的层（到起点或目标的距离）。 */
+    public int getLayer() {
+        return layer;
+    }
+
+    public long[] getVisited() {
+        return visited;
+    }
+
+    public long[] getFrontier() {
+        return frontier;
+    }
+
+    /** 判断检查点是否属于指定任务，参数也必须一致。 */
+    public boolean matches(String job, long[] params) {
+        return this.job.equals(job) && Arrays.equals(this.params, params);
+    }
+
+    public void write(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path tmp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(job);
+            writeLongs(out, params);
+            out.writeInt(layer);
+            writeLongs(out, visited);
+            writeLongs(out, frontier);
+            out.flush();
+            channel.force(true);
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static SearchCheckpoint read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC) throw new IOException("Not a search checkpoint: " + file);
+            int version = in.readInt();
+            if (version != VERSION) throw new IOException("Unsupported checkpoint version " + version);
+            String job = in.readUTF();
+            long[] params = readLongs(in);
+            int layer = in.readInt();
+            long[] visited = readLongs(in);
+            long[] frontier = readLongs(in);
+            return new SearchCheckpoint(job, params, layer, visited, frontier);
+        }
+    }
+
+    private static void writeLongs(DataOutputStream out, long[] values) throws IOException {
+        out.writeInt(values.length);
+        for (long v : values) out.writeLong(v);
+    }
+
+    private static long[] readLongs(DataInputStream in) throws IOException {
+        long[] values = new long[in.readInt()];
+        for (int i = 0; i < values.length; i++) values[i] = in.readLong();
+        return values;
+    }
+}
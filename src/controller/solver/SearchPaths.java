@@ -0,0 +1,39 @@
+package controller.solver;
+
+import java.util.Arrays;
+import java.util.function.LongToIntFunction;
+
+/**
+ * 由已访问表中记录的“进入该状态的那一步”回溯出完整路径。
+ */
+final class SearchPaths {
+    /** 起点在已访问表中的标记值。 */
+    static final int ROOT = 0xFF;
+
+    private SearchPaths() {
+    }
+
+    static int[] reconstruct(MoveGenerator generator, VisitedTable visited, long board) {
+        return reconstruct(generator, visited::get, board);
+    }
+
+    /** incomingMove 返回进入某状态的那一步，起点为 {@link #ROOT}，不存在为负数。 */
+    static int[] reconstruct(MoveGenerator generator, LongToIntFunction incomingMove, long board) {
+        int[] path = new int[16];
+        int length = 0;
+        int move;
+        while ((move = incomingMove.applyAsInt(board)) != ROOT) {
+            if (move < 0) {
+                throw new IllegalStateException("Broken search path");
+            }
+            if (length == path.length) path = Arrays.copyOf(path, length * 2);
+            path[length++] = move;
+            board = generator.apply(board, generator.inverse(move));
+        }
+        int[] result = new int[length];
+        for (int i = 0; i < length; i++) {
+            result[i] = path[length - 1 - i];
+        }
+        return result;
+    }
+}
@@ -0,0 +1,87 @@
+package controller.solver;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 搜索轨迹记录器：把每条生成的边（子局面、父局面、移动、深度、时间戳）写入紧凑的二进制文件，
+ * 供 {@link SearchTraceReader} 事后分析。默认关闭，求解器持有 null 时只多一次判空。
+ * <p>
+ * 写入经过一块 64 KB 的直接缓冲区，满了才整块写给 FileChannel；时间戳每次展开只取一次。
+ * 文件格式（大端）：头部 magic, version, 宽, 高, 起点；之后每条记录
+ * 子局面(long), 父局面(long), 相对起始的微秒(int), 父局面深度(short), 移动(byte), 标志(byte)。
+ */
+public final class SearchTrace implements AutoCloseable {
+    static final int MAGIC = 0x4B545243; // "KTRC"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 4 + 4 + 4 + 4 + 8;
+    static final int RECORD_BYTES = 8 + 8 + 4 + 2 + 1 + 1;
+    /** 标志位：子局面此前已访问过。 */
+    static final int FLAG_DUPLICATE = 1;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+    private final long startNanos = System.nanoTime();
+    private int micros;
+    private long records;
+
+    private SearchTrace(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /** 新建轨迹文件，已存在则覆盖。 */
+    public static SearchTrace open(Path file, int width, int height, long start) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        SearchTrace trace = new SearchTrace(channel);
+        trace.buffer.putInt(MAGIC).putInt(VERSION).putInt(width).putInt(height).putLong(start);
+        return trace;
+    }
+
+    /** 开始展开一个局面：刷新本次展开的时间戳。 */
+    public void beginExpansion() {
+        micros = (int) ((System.nanoTime() - startNanos) / 1000);
+    }
+
+    public void record(long state, long parent, int move, int depth, boolean duplicate) {
+        if (buffer.remaining() < RECORD_BYTES) flush();
+        buffer.putLong(state).putLong(parent).putInt(micros)
+                .putShort((short) Math.min(depth, Short.MAX_VALUE))
+                .put((byte) move).put((byte) (duplicate ? FLAG_DUPLICATE : 0));
+        records++;
+    }
+
+    public long getRecords() {
+        return records;
+    }
+
+    private void flush() {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) channel.write(buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } catch (UncheckedIOException e) {
+            channel.close();
+            throw e.getCause();
+        } finally {
+            DirectMemory.free(buffer);
+        }
+        channel.close();
+    }
+}
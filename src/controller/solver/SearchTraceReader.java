@@ -0,0 +1,152 @@
+package controller.solver;
+
+import model.BoardCodec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 读取 {@link SearchTrace} 写出的轨迹文件并打印摘要：
+ * 每层的展开数、分支因子、重复率和耗时，以及被反复生成最多的热点局面。
+ * 用法：{@code java controller.solver.SearchTraceReader 轨迹文件 [热点个数]}
+ */
+public final class SearchTraceReader {
+    private SearchTraceReader() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: SearchTraceReader <trace file> [hotspots]");
+            return;
+        }
+        int top = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        Summary summary = read(Paths.get(args[0]));
+        summary.print(top);
+    }
+
+    /** 按层统计的结果。 */
+    public static final class Summary {
+        private final int width;
+        private final int height;
+        private long[] expansions = new long[64];
+        private long[] edges = new long[64];
+        private long[] duplicates = new long[64];
+        private int[] firstMicros = new int[64];
+        private int[] lastMicros = new int[64];
+        private int maxDepth = -1;
+        private final Map<Long, int[]> generated = new HashMap<>();
+
+        Summary(int width, int height) {
+            this.width = width;
+            this.height = height;
+        }
+
+        void add(long state, long parent, int micros, int depth, boolean duplicate, boolean newParent) {
+            if (depth >= edges.length) grow(depth + 1);
+            if (depth > maxDepth) {
+                for (int d = maxDepth + 1; d <= depth; d++) firstMicros[d] = micros;
+                maxDepth = depth;
+            }
+            if (newParent) expansions[depth]++;
+            edges[depth]++;
+            if (duplicate) duplicates[depth]++;
+            lastMicros[depth] = micros;
+            generated.computeIfAbsent(state, k -> new int[1])[0]++;
+        }
+
+        private void grow(int size) {
+            int n = Math.max(size, edges.length * 2);
+            expansions = Arrays.copyOf(expansions, n);
+            edges = Arrays.copyOf(edges, n);
+            duplicates = Arrays.copyOf(duplicates, n);
+            firstMicros = Arrays.copyOf(firstMicros, n);
+            lastMicros = Arrays.copyOf(lastMicros, n);
+        }
+
+        public int getMaxDepth() {
+            return maxDepth;
+        }
+
+        /** 第 depth 层每个被展开局面平均生成的子局面数。 */
+        public double branchingFactor(int depth) {
+            return expansions[depth] == 0 ? 0 : (double) edges[depth] / expansions[depth];
+        }
+
+        /** 第 depth 层生成的子局面中已访问过的比例。 */
+        public double duplicateRate(int depth) {
+            return edges[depth] == 0 ? 0 : (double) duplicates[depth] / edges[depth];
+        }
+
+        void print(int top) {
+            System.out.printf("board %dx%d, %d depths, %d distinct states%n",
+                    width, height, maxDepth + 1, generated.size());
+            System.out.printf("%6s %10s %10s %10s %8s %10s%n",
+                    "depth", "expanded", "edges", "branching", "dup%", "time(ms)");
+            for (int d = 0; d <= maxDepth; d++) {
+                System.out.printf("%6d %10d %10d %10.2f %8.1f %10.1f%n", d, expansions[d], edges[d],
+                        branchingFactor(d), duplicateRate(d) * 100, (lastMicros[d] - firstMicros[d]) / 1000.0);
+            }
+            List<Map.Entry<Long, int[]>> hot = new ArrayList<>(generated.entrySet());
+            hot.sort((a, b) -> Integer.compare(b.getValue()[0], a.getValue()[0]));
+            System.out.println("hotspots (times generated):");
+            for (int i = 0; i < Math.min(top, hot.size()); i++) {
+                Map.Entry<Long, int[]> e = hot.get(i);
+                System.out.printf("%6d  %s%n", e.getValue()[0],
+                        Arrays.deepToString(BoardCodec.unpack(e.getKey(), width, height)));
+            }
+        }
+    }
+
+    public static Summary read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+            buffer.limit(SearchTrace.HEADER_BYTES);
+            readFully(channel, buffer);
+            buffer.flip();
+            if (buffer.remaining() < SearchTrace.HEADER_BYTES || buffer.getInt() != SearchTrace.MAGIC) {
+                throw new IOException("Not a search trace: " + file);
+            }
+            int version = buffer.getInt();
+            if (version != SearchTrace.VERSION) throw new IOException("Unsupported trace version " + version);
+            Summary summary = new Summary(buffer.getInt(), buffer.getInt());
+            buffer.getLong();
+            buffer.clear();
+            long lastParent = 0;
+            while (channel.read(buffer) > 0 || buffer.position() > 0) {
+                buffer.flip();
+                if (buffer.remaining() < SearchTrace.RECORD_BYTES) {
+                    if (channel.position() >= channel.size()) break; // 末尾的残缺记录
+                    buffer.compact();
+                    continue;
+                }
+                while (buffer.remaining() >= SearchTrace.RECORD_BYTES) {
+                    long state = buffer.getLong();
+                    long parent = buffer.getLong();
+                    int micros = buffer.getInt();
+                    int depth = buffer.getShort();
+                    buffer.get();
+                    boolean duplicate = (buffer.get() & SearchTrace.FLAG_DUPLICATE) != 0;
+                    summary.add(state, parent, micros, depth, duplicate, parent != lastParent);
+                    lastParent = parent;
+                }
+                buffer.compact();
+            }
+            return summary;
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining() && channel.read(buffer) > 0) {
+            // 读到头部写满或文件结束
+        }
+    }
+}
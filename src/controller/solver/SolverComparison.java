@@ -0,0 +1,84 @@
+package controller.solver;
+
+import model.Board;
+import model.Goal;
+import tool.tool;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 对比运行器：在同一批局面上依次运行所有已登记的 {@link SolverStrategy}，
+ * 输出耗时、分配内存、展开节点数和解长相对最短解的比值。
+ * 用法：{@code java controller.solver.SolverComparison [--all] [关卡名...]}，不带关卡名时跑全部内置关卡。
+ * 默认跳过 {@link #SLOW_STRATEGIES} 中的策略，加 {@code --all} 才一并运行。
+ */
+public final class SolverComparison {
+    /**
+     * 在内置关卡上比 BFS 慢一到两个数量级的策略：这些关卡的状态空间只有几十万，
+     * 曼哈顿估价又弱，IDA* 每轮迭代都要重走一遍阈值以内的局面。
+     */
+    private static final List<String> SLOW_STRATEGIES = List.of("ida-parallel");
+
+    private SolverComparison() {
+    }
+
+    public static void main(String[] args) {
+        List<String> names = new ArrayList<>(List.of(args));
+        boolean all = names.remove("--all");
+        String[] levels = names.isEmpty() ? tool.LEVEL_NAMES : names.toArray(new String[0]);
+        List<SolverStrategy> strategies = SolverStrategy.loadAll();
+        if (!all) strategies.removeIf(s -> SLOW_STRATEGIES.contains(s.name()));
+        if (strategies.isEmpty()) {
+            System.out.println("No solver strategies registered.");
+            return;
+        }
+        System.out.printf("%-8s %-14s %10s %12s %10s %8s %8s%n",
+                "level", "strategy", "time(ms)", "alloc(KB)", "expanded", "length", "ratio");
+        for (String level : levels) {
+            Board board = Board.of(tool.levelByName(level));
+            Goal goal = tool.goalByName(level);
+            List<SolverResult> results = new ArrayList<>();
+            List<Long> allocations = new ArrayList<>();
+            for (SolverStrategy strategy : strategies) {
+                long before = allocatedBytes();
+                SolverResult result = strategy.solve(board, goal);
+                results.add(result);
+                allocations.add(allocatedBytes() - before);
+                if (result.isSolved() && !result.isOptimal()) {
+                    // 同时列出路径压短后的结果，耗时和分配包含原求解
+                    SolverResult shortened = new PathShortener(board.getWidth(), board.getHeight())
+                            .shorten(board, result);
+                    results.add(new SolverResult(result.getStrategy() + "+short", true, false,
+                            shortened.getPath(), shortened.getExpanded(), shortened.getElapsedNanos()));
+                    allocations.add(allocatedBytes() - before);
+                }
+            }
+            int best = Integer.MAX_VALUE;
+            for (SolverResult r : results) {
+                if (r.isSolved() && r.isOptimal()) best = Math.min(best, r.getLength());
+            }
+            for (int i = 0; i < results.size(); i++) {
+                SolverResult r = results.get(i);
+                String ratio = !r.isSolved() ? "-"
+                        : best == Integer.MAX_VALUE || best == 0 ? "?"
+                        : String.format("%.2f", (double) r.getLength() / best);
+                long alloc = allocations.get(i);
+                System.out.printf("%-8s %-14s %10.1f %12s %10d %8s %8s%n",
+                        level, r.getStrategy(), r.getElapsedNanos() / 1e6,
+                        alloc < 0 ? "n/a" : Long.toString(alloc / 1024),
+                        r.getExpanded(), r.isSolved() ? Integer.toString(r.getLength()) : "-", ratio);
+            }
+        }
+    }
+
+    // 当前线程累计分配的字节数；JVM 不支持时返回 -1
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getCurrentThreadAllocatedBytes();
+        }
+        return -1;
+    }
+}
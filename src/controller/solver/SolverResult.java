@@ -0,0 +1,70 @@
+package controller.solver;
+
+import model.Direction;
+
+/**
+ * 一次求解的结果：解路径（已编码的移动序列）以及统计信息。
+ */
+public final class SolverResult {
+    private final String strategy;
+    private final boolean solved;
+    private final boolean optimal;
+    private final int[] path;
+    private final long expanded;
+    private final long elapsedNanos;
+
+    public SolverResult(String strategy, boolean solved, boolean optimal, int[] path,
+                        long expanded, long elapsedNanos) {
+        this.strategy = strategy;
+        this.solved = solved;
+        this.optimal = optimal;
+        this.path = path;
+        this.expanded = expanded;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public static SolverResult unsolved(String strategy, long expanded, long elapsedNanos) {
+        return new SolverResult(strategy, false, false, new int[0], expanded, elapsedNanos);
+    }
+
+    public String getStrategy() {
+        return strategy;
+    }
+
+    /** 是否找到解；起点已在目标时也算找到，路径为空。 */
+    public boolean isSolved() {
+        return solved;
+    }
+
+    /** 路径是否保证最短。 */
+    public boolean isOptimal() {
+        return optimal;
+    }
+
+    /** 解路径的副本，每个元素见 {@link MoveGenerator#encodeMove}。 */
+    public int[] getPath() {
+        return path.clone();
+    }
+
+    public int getLength() {
+        return path.length;
+    }
+
+    /** 第一步的编码，没有可走的步时返回 {@link BfsSolver#NO_MOVE}。 */
+    public int getFirstMove() {
+        return path.length == 0 ? BfsSolver.NO_MOVE : path[0];
+    }
+
+    /** 第一步的方向，没有可走的步时返回 null。 */
+    public Direction getFirstDirection() {
+        return path.length == 0 ? null : MoveGenerator.directionOf(path[0]);
+    }
+
+    public long getExpanded() {
+        return expanded;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+}
@@ -0,0 +1,40 @@
+package controller.solver;
+
+import model.Board;
+import model.Goal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceLoader;
+
+/**
+ * 求解策略的服务接口。实现类需要公开的无参构造器，
+ * 并登记在 META-INF/services/controller.solver.SolverStrategy 中，由 {@link java.util.ServiceLoader} 发现。
+ */
+public interface SolverStrategy {
+    /** 策略名称，用于报表和配置。 */
+    String name();
+
+    /** 该策略找到的解是否保证最短。 */
+    boolean isOptimal();
+
+    /** 从 board 出发求解到 goal；无解时返回 {@link SolverResult#isSolved()} 为 false 的结果。 */
+    SolverResult solve(Board board, Goal goal);
+
+    /** 加载所有已登记的策略。 */
+    static List<SolverStrategy> loadAll() {
+        List<SolverStrategy> strategies = new ArrayList<>();
+        for (SolverStrategy strategy : ServiceLoader.load(SolverStrategy.class)) {
+            strategies.add(strategy);
+        }
+        return strategies;
+    }
+
+    /** 按名称查找已登记的策略，找不到时返回 null。 */
+    static SolverStrategy find(String name) {
+        for (SolverStrategy strategy : ServiceLoader.load(SolverStrategy.class)) {
+            if (strategy.name().equals(name)) return strategy;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,188 @@
+package controller.solver;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * 一个关卡从起点可达的完整走法图，按压缩稀疏行（CSR）存储：
+ * 节点是按压缩棋盘升序排列的局面，节点 i 的邻居为 targets[offsets[i] .. offsets[i+1])。
+ * 走法可逆，所以每条边在两端各出现一次。
+ * <p>
+ * 文件格式（小端，各段按 8 字节对齐，可直接内存映射）：
+ * magic, version, 宽, 高, 节点数(int), 边数(long), 保留(int)；
+ * 之后依次是 keys(long × 节点数)、offsets(int × (节点数 + 1))、填充到 8 字节、targets(int × 边数)。
+ * offsets 为 int，单个文件最多约 21 亿条边。
+ */
+public final class StateGraph {
+    static final int MAGIC = 0x4B435352; // "KCSR"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 32;
+
+    private final int width;
+    private final int height;
+    private final long[] keys;
+    private final int[] offsets;
+    private final int[] targets;
+
+    private StateGraph(int width, int height, long[] keys, int[] offsets, int[] targets) {
+        this.width = width;
+        this.height = height;
+        this.keys = keys;
+        this.offsets = offsets;
+        this.targets = targets;
+    }
+
+    /** 从 start 出发枚举可达的全部局面并建立 CSR。 */
+    public static StateGraph explore(int width, int height, long start) {
+        return explore(width, height, start, Integer.MAX_VALUE);
+    }
+
+    /** 同上，但局面数超过 maxNodes 时放弃并返回 null。 */
+    public static StateGraph explore(int width, int height, long start, int maxNodes) {
+        MoveGenerator generator = new MoveGenerator(width, height);
+        long[] boards = new long[generator.maxMoves()];
+        long[] keys = new long[1 << 12];
+        int size = 0;
+        long edges = 0;
+        try (VisitedTable visited = VisitedTable.create(false)) {
+            visited.putIfAbsent(start, SearchPaths.ROOT);
+            keys[size++] = start;
+            for (int head = 0; head < size; head++) {
+                int n = generator.expand(keys[head], boards, null);
+                edges += n;
+                for (int i = 0; i < n; i++) {
+                    if (!visited.putIfAbsent(boards[i], 0)) continue;
+                    if (size == maxNodes) return null;
+                    if (size == keys.length) keys = Arrays.copyOf(keys, size * 2);
+                    keys[size++] = boards[i];
+                }
+            }
+        }
+        if (edges > Integer.MAX_VALUE) throw new IllegalArgumentException("Too many edges: " + edges);
+        keys = Arrays.copyOf(keys, size);
+        Arrays.sort(keys);
+        int[] offsets = new int[size + 1];
+        int[] targets = new int[(int) edges];
+        int m = 0;
+        for (int i = 0; i < size; i++) {
+            offsets[i] = m;
+            int n = generator.expand(keys[i], boards, null);
+            for (int j = 0; j < n; j++) {
+                targets[m++] = Arrays.binarySearch(keys, boards[j]);
+            }
+        }
+        offsets[size] = m;
+        return new StateGraph(width, height, keys, offsets, targets);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int nodeCount() {
+        return keys.length;
+    }
+
+    public long edgeCount() {
+        return targets.length;
+    }
+
+    /** 局面的节点下标；不在图中时返回负数。 */
+    public int indexOf(long board) {
+        int index = Arrays.binarySearch(keys, board);
+        return index >= 0 ? index : -1;
+    }
+
+    public long key(int node) {
+        return keys[node];
+    }
+
+    public int degree(int node) {
+        return offsets[node + 1] - offsets[node];
+    }
+
+    /** 节点的第 k 个邻居。 */
+    public int neighbor(int node, int k) {
+        return targets[offsets[node] + k];
+    }
+
+    /** 先写临时文件再原子替换，读者不会看到写了一半的图。 */
+    public void write(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path tmp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(width).putInt(height)
+                    .putInt(keys.length).putLong(targets.length).putInt(0);
+            for (long key : keys) {
+                if (buffer.remaining() < Long.BYTES) drain(channel, buffer);
+                buffer.putLong(key);
+            }
+            for (int offset : offsets) {
+                if (buffer.remaining() < Integer.BYTES) drain(channel, buffer);
+                buffer.putInt(offset);
+            }
+            if ((offsets.length & 1) != 0) {
+                if (buffer.remaining() < Integer.BYTES) drain(channel, buffer);
+                buffer.putInt(0);
+            }
+            for (int target : targets) {
+                if (buffer.remaining() < Integer.BYTES) drain(channel, buffer);
+                buffer.putInt(target);
+            }
+            drain(channel, buffer);
+            channel.force(true);
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        } finally {
+            DirectMemory.free(buffer);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** 通过内存映射读回 {@link #write} 写出的文件。 */
+    public static StateGraph read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if (map.remaining() < HEADER_BYTES || map.getInt() != MAGIC) {
+                throw new IOException("Not a state graph: " + file);
+            }
+            int version = map.getInt();
+            if (version != VERSION) throw new IOException("Unsupported state graph version " + version);
+            int width = map.getInt();
+            int height = map.getInt();
+            int nodes = map.getInt();
+            long edges = map.getLong();
+            map.getInt();
+            long[] keys = new long[nodes];
+            map.asLongBuffer().get(keys);
+            map.position(map.position() + nodes * Long.BYTES);
+            int[] offsets = new int[nodes + 1];
+            map.asIntBuffer().get(offsets);
+            map.position(map.position() + (nodes + 1 + ((nodes + 1) & 1)) * Integer.BYTES);
+            int[] targets = new int[(int) edges];
+            map.asIntBuffer().get(targets);
+            return new StateGraph(width, height, keys, offsets, targets);
+        }
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+}
@@ -0,0 +1,43 @@
+package controller.solver;
+
+import model.BoardCodec;
+import tool.tool;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * 把内置关卡的完整走法图导出为 CSR 文件（格式见 {@link StateGraph}），供外部分析工具直接内存映射。
+ * 用法：{@code java controller.solver.StateGraphExporter [输出目录] [关卡名...]}，
+ * 默认输出到 graphs 目录，不指定关卡时导出全部内置关卡。
+ */
+public final class StateGraphExporter {
+    private StateGraphExporter() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path dir = Paths.get(args.length > 0 ? args[0] : "graphs");
+        String[] levels = args.length > 1 ? Arrays.copyOfRange(args, 1, args.length) : tool.LEVEL_NAMES;
+        for (int i = 0; i < levels.length; i++) {
+            int[][] matrix = tool.levelByName(levels[i]);
+            long begin = System.nanoTime();
+            StateGraph graph = StateGraph.explore(matrix[0].length, matrix.length, BoardCodec.pack(matrix));
+            // 关卡名可能含非 ASCII 字符，文件名用序号
+            Path file = dir.resolve(String.format("level-%02d.csr", indexOf(levels[i], i)));
+            graph.write(file);
+            System.out.printf("%s -> %s: %d nodes, %d edges, %d bytes, %.1f ms%n", levels[i], file,
+                    graph.nodeCount(), graph.edgeCount(), Files.size(file), (System.nanoTime() - begin) / 1e6);
+        }
+    }
+
+    // 内置关卡用它在 LEVEL_NAMES 中的序号，其余按参数顺序
+    private static int indexOf(String level, int fallback) {
+        for (int i = 0; i < tool.LEVEL_NAMES.length; i++) {
+            if (tool.LEVEL_NAMES[i].equals(level)) return i;
+        }
+        return fallback;
+    }
+}
@@ -0,0 +1,508 @@
+package controller.solver;
+
+import model.BoardCodec;
+import model.Goal;
+import tool.tool;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * 关卡族的全状态空间分析：方块形状的多重集合相同的关卡属于同一族（见 {@link PositionRanker#canonical}），
+ * 族内全部摆放由 {@link PositionRanker} 枚举。
+ * 从所有目标局面出发做并行分层 BFS，得到每个摆放到目标的步数，报告最难的起始局面（步数最大）；
+ * 再在按排名建好的走法图上用 iFUB 逐个连通分量求精确直径。
+ * 用法：{@code java controller.solver.StateSpaceAnalyzer [每族打印的最难局面个数 [检查点目录]]}；
+ * 给出检查点目录时每族每隔 {@link #CHECKPOINT_LAYERS} 层写一次检查点，中断后用同样的参数重跑即从检查点继续。
+ */
+public final class StateSpaceAnalyzer {
+    /** 每个任务至少处理的前沿局面数，更小的区间不再拆分。 */
+    private static final int CHUNK = 4096;
+    /** 每个任务至少计算离心率的局面数。 */
+    private static final int ECCENTRICITY_CHUNK = 8;
+    private static final int UNREACHED = -1;
+    /** 默认每隔多少层写一次检查点。 */
+    public static final int CHECKPOINT_LAYERS = 16;
+    private static final String CHECKPOINT_JOB = "state-space-distances";
+
+    private final PositionRanker ranker;
+    private final MoveGenerator generator;
+    private final ForkJoinPool pool;
+
+    public StateSpaceAnalyzer(PositionRanker ranker, ForkJoinPool pool) {
+        if (ranker.size() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many positions: " + ranker.size());
+        }
+        this.ranker = ranker;
+        this.generator = new MoveGenerator(ranker.getWidth(), ranker.getHeight());
+        this.pool = pool;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int show = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        Path checkpoints = args.length > 1 ? Paths.get(args[1]) : null;
+        Map<String, List<String>> families = new LinkedHashMap<>();
+        for (String level : tool.LEVEL_NAMES) {
+            int[][] matrix = tool.levelByName(level);
+            int width = matrix[0].length;
+            int height = matrix.length;
+            Goal goal = tool.goalByName(level);
+            long board = PositionRanker.canonical(width, height, BoardCodec.pack(matrix), goal);
+            String name = familyName(width, height, goal, board);
+            families.computeIfAbsent(name, k -> new ArrayList<>()).add(level);
+        }
+        for (Map.Entry<String, List<String>> family : families.entrySet()) {
+            List<String> levels = family.getValue();
+            int[][] matrix = tool.levelByName(levels.get(0));
+            int width = matrix[0].length;
+            int height = matrix.length;
+            Goal goal = tool.goalByName(levels.get(0));
+            long begin = System.nanoTime();
+            PositionRanker ranker = PositionRanker.forBoard(width, height,
+                    PositionRanker.canonical(width, height, BoardCodec.pack(matrix), goal));
+            Path checkpoint = checkpoints == null ? null : checkpoints.resolve(family.getKey() + ".ckp");
+            Report report = new StateSpaceAnalyzer(ranker, ForkJoinPool.commonPool())
+                    .analyze(goal, checkpoint, CHECKPOINT_LAYERS);
+            System.out.printf("levels %s: %d positions, %d solvable, max distance %d (%d positions), "
+                            + "%d components, diameter %d, %.1f ms%n",
+                    levels, ranker.size(), report.solvable, report.maxDistance, report.hardest.length,
+                    report.components, report.diameter, (System.nanoTime() - begin) / 1e6);
+            for (int i = 0; i < Math.min(show, report.hardest.length); i++) {
+                System.out.println("  " + Arrays.deepToString(BoardCodec.unpack(report.hardest[i], width, height)));
+            }
+        }
+    }
+
+    // 族名由尺寸、目标和按形状统计的方块组合决定，也用作检查点文件名
+    private static String familyName(int width, int height, Goal goal, long canonicalBoard) {
+        StringBuilder name = new StringBuilder();
+        name.append(width).append('x').append(height)
+                .append('-').append(Long.toHexString(goal.mask(width)))
+                .append('-').append(Long.toHexString(goal.value(width)));
+        int[] kinds = PositionRanker.kindsOf(width, height, canonicalBoard);
+        for (int k = 0; k < kinds.length; k += 4) {
+            name.append('-').append(kinds[k]).append('.').append(kinds[k + 1]).append(kinds[k + 2])
+                    .append('x').append(kinds[k + 3]);
+        }
+        return name.toString();
+    }
+
+    /** 一族的分析结果。 */
+    public static final class Report {
+        /** 能到达目标的摆放数。 */
+        public final long solvable;
+        /** 到目标的最大步数。 */
+        public final int maxDistance;
+        /** 步数等于最大值的全部局面。 */
+        public final long[] hardest;
+        /** 走法图的连通分量数。 */
+        public final int components;
+        /** 走法图的直径：同一连通分量内两局面间最短距离的最大值。 */
+        public final int diameter;
+
+        Report(long solvable, int maxDistance, long[] hardest, int components, int diameter) {
+            this.solvable = solvable;
+            this.maxDistance = maxDistance;
+            this.hardest = hardest;
+            this.components = components;
+            this.diameter = diameter;
+        }
+    }
+
+    public Report analyze(Goal goal) {
+        try {
+            return analyze(goal, null, CHECKPOINT_LAYERS);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // 不写检查点时不会发生
+        }
+    }
+
+    /**
+     * 带检查点的分析：checkpoint 文件已存在且属于同一族和目标时，到目标距离的 BFS 从中保存的层继续，
+     * 之后每隔 everyLayers 层写一次检查点；BFS 完成时再写一次（前沿为空），整个分析完成后删除。
+     * checkpoint 为 null 时不写。
+     */
+    public Report analyze(Goal goal, Path checkpoint, int everyLayers) throws IOException {
+        if (everyLayers < 1) throw new IllegalArgumentException("Checkpoint interval must be positive");
+        long goalMask = goal.mask(ranker.getWidth());
+        long goalValue = goal.value(ranker.getWidth());
+        int size = (int) ranker.size();
+        long[] params = checkpointParams(goalMask, goalValue);
+        AtomicIntegerArray distances = null;
+        if (checkpoint != null && Files.exists(checkpoint)) {
+            SearchCheckpoint saved = SearchCheckpoint.read(checkpoint);
+            if (saved.matches(CHECKPOINT_JOB, params)) {
+                distances = unpackDistances(saved.getVisited(), size);
+                long[] frontier = saved.getFrontier();
+                int[] layer = new int[frontier.length];
+                for (int i = 0; i < layer.length; i++) layer[i] = (int) frontier[i];
+                expandLayers(distances, layer, saved.getLayer(), checkpoint, everyLayers, params);
+            }
+        }
+        if (distances == null) {
+            int[] goals = new int[1024];
+            int goalCount = 0;
+            for (int r = 0; r < size; r++) {
+                if ((ranker.unrank(r) & goalMask) == goalValue) {
+                    if (goalCount == goals.length) goals = Arrays.copyOf(goals, goalCount * 2);
+                    goals[goalCount++] = r;
+                }
+            }
+            distances = newDistances(Arrays.copyOf(goals, goalCount));
+            expandLayers(distances, Arrays.copyOf(goals, goalCount), 0, checkpoint, everyLayers, params);
+        }
+        int max = 0;
+        long solvable = 0;
+        for (int r = 0; r < size; r++) {
+            int d = distances.get(r);
+            if (d == UNREACHED) continue;
+            solvable++;
+            if (d > max) max = d;
+        }
+        long[] hardest = new long[16];
+        int hardestCount = 0;
+        for (int r = 0; r < size && solvable > 0; r++) {
+            if (distances.get(r) != max) continue;
+            if (hardestCount == hardest.length) hardest = Arrays.copyOf(hardest, hardestCount * 2);
+            hardest[hardestCount++] = ranker.unrank(r);
+        }
+        RankGraph graph = pool.invoke(new RankGraphTask(0, size));
+        int[] component = new int[size];
+        int components = graph.label(component);
+        Report report = new Report(solvable, max, Arrays.copyOf(hardest, hardestCount), components,
+                diameter(graph, component, components));
+        if (checkpoint != null) Files.deleteIfExists(checkpoint);
+        return report;
+    }
+
+    /**
+     * 从 sources 出发的并行分层 BFS；不可达的排名为 -1。
+     * PositionRanker 的记忆表在构造时已经填满，rank/unrank 只读，可以在各线程中并发调用。
+     */
+    public AtomicIntegerArray distances(int[] sources) {
+        AtomicIntegerArray distances = newDistances(sources);
+        try {
+            expandLayers(distances, sources.clone(), 0, null, CHECKPOINT_LAYERS, null);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // 不写检查点时不会发生
+        }
+        return distances;
+    }
+
+    private AtomicIntegerArray newDistances(int[] sources) {
+        AtomicIntegerArray distances = new AtomicIntegerArray((int) ranker.size());
+        for (int r = 0; r < distances.length(); r++) distances.set(r, UNREACHED);
+        for (int source : sources) distances.set(source, 0);
+        return distances;
+    }
+
+    // 逐层扩展直到前沿为空；每到 everyLayers 的整数倍层（起始层除外）在层与层之间写检查点
+    private void expandLayers(AtomicIntegerArray distances, int[] layer, int depth, Path checkpoint,
+                              int everyLayers, long[] params) throws IOException {
+        int startDepth = depth;
+        while (layer.length > 0) {
+            if (checkpoint != null && depth != startDepth && depth % everyLayers == 0) {
+                writeCheckpoint(checkpoint, params, depth, distances, layer);
+            }
+            layer = pool.invoke(new LayerTask(distances, layer, 0, layer.length, depth + 1));
+            depth++;
+        }
+        // BFS 完成后留一份前沿为空的检查点，后面建图和求直径时中断不必重跑 BFS
+        if (checkpoint != null && depth != startDepth) writeCheckpoint(checkpoint, params, depth, distances, layer);
+    }
+
+    private static void writeCheckpoint(Path checkpoint, long[] params, int depth, AtomicIntegerArray distances,
+                                        int[] layer) throws IOException {
+        long[] frontier = new long[layer.length];
+        for (int i = 0; i < layer.length; i++) frontier[i] = layer[i];
+        new SearchCheckpoint(CHECKPOINT_JOB, params, depth, packDistances(distances), frontier).write(checkpoint);
+    }
+
+    private long[] checkpointParams(long goalMask, long goalValue) {
+        int[] kinds = ranker.kinds();
+        long[] params = new long[4 + kinds.length];
+        params[0] = ranker.getWidth();
+        params[1] = ranker.getHeight();
+        params[2] = goalMask;
+        params[3] = goalValue;
+        for (int i = 0; i < kinds.length; i++) params[4 + i] = kinds[i];
+        return params;
+    }
+
+    // 每个 long 存两个排名的距离，偶数排名在低 32 位
+    private static long[] packDistances(AtomicIntegerArray distances) {
+        long[] packed = new long[(distances.length() + 1) / 2];
+        for (int r = 0; r < distances.length(); r++) {
+            packed[r >> 1] |= (distances.get(r) & 0xFFFFFFFFL) << ((r & 1) * 32);
+        }
+        return packed;
+    }
+
+    private static AtomicIntegerArray unpackDistances(long[] packed, int size) throws IOException {
+        if (packed.length != (size + 1) / 2) throw new IOException("Checkpoint does not match the position count");
+        AtomicIntegerArray distances = new AtomicIntegerArray(size);
+        for (int r = 0; r < size; r++) distances.set(r, (int) (packed[r >> 1] >>> ((r & 1) * 32)));
+        return distances;
+    }
+
+    /*
+     * iFUB（iterative Fringe Upper Bound）：从分量中部的 u 做 BFS，按层从远到近求各层局面的离心率。
+     * 第 i 层以内任意两点的距离不超过 2i，所以已知下界超过 2(i - 1) 时剩下的层不可能更大，直径即为该下界。
+     * u 取双扫描所得最长路径的中点，这样 BFS 层数最少，需要求离心率的层也最少。
+     * 分量大小减一不超过已知直径时整个分量跳过。
+     */
+    private int diameter(RankGraph graph, int[] component, int components) {
+        int[] sizes = new int[components];
+        int[] representative = new int[components];
+        for (int r = component.length - 1; r >= 0; r--) {
+            sizes[component[r]]++;
+            representative[component[r]] = r;
+        }
+        Bfs bfs = new Bfs(graph);
+        int best = 0;
+        for (int c = 0; c < components; c++) {
+            if (sizes[c] - 1 <= best) continue;
+            bfs.run(representative[c]);
+            int lower = bfs.run(bfs.last());
+            int eccentricity = bfs.run(bfs.midpoint(bfs.last(), lower / 2));
+            int[][] fringes = bfs.layers();
+            // 上界为 2i；不超过已知直径时这个分量不会更大
+            for (int i = eccentricity; i > 0 && 2 * i > lower && 2 * i > best; i--) {
+                lower = Math.max(lower, pool.invoke(new EccentricityTask(graph, fringes[i], 0, fringes[i].length)));
+                if (lower > 2 * (i - 1)) break;
+            }
+            best = Math.max(best, lower);
+        }
+        return best;
+    }
+
+    // 按排名建的走法图（CSR）：排名 r 的邻居为 targets[offsets[r] .. offsets[r + 1])
+    private static final class RankGraph {
+        final int[] offsets;
+        final int[] targets;
+
+        RankGraph(int[] offsets, int[] targets) {
+            this.offsets = offsets;
+            this.targets = targets;
+        }
+
+        int size() {
+            return offsets.length - 1;
+        }
+
+        // 给每个排名标上连通分量编号，返回分量数
+        int label(int[] component) {
+            Arrays.fill(component, UNREACHED);
+            int[] queue = new int[size()];
+            int count = 0;
+            for (int start = 0; start < size(); start++) {
+                if (component[start] != UNREACHED) continue;
+                component[start] = count;
+                queue[0] = start;
+                for (int head = 0, tail = 1; head < tail; head++) {
+                    int node = queue[head];
+                    for (int e = offsets[node]; e < offsets[node + 1]; e++) {
+                        int next = targets[e];
+                        if (component[next] != UNREACHED) continue;
+                        component[next] = count;
+                        queue[tail++] = next;
+                    }
+                }
+                count++;
+            }
+            return count;
+        }
+    }
+
+    // 单源 BFS，距离数组复用：每次只重置上次访问过的局面
+    private static final class Bfs {
+        private final RankGraph graph;
+        private final int[] distance;
+        private final int[] parent;
+        private final int[] queue;
+        private int visited;
+
+        Bfs(RankGraph graph) {
+            this.graph = graph;
+            this.distance = new int[graph.size()];
+            this.parent = new int[graph.size()];
+            this.queue = new int[graph.size()];
+            Arrays.fill(distance, UNREACHED);
+        }
+
+        /** 从 source 出发遍历所在分量，返回 source 的离心率。 */
+        int run(int source) {
+            for (int i = 0; i < visited; i++) distance[queue[i]] = UNREACHED;
+            distance[source] = 0;
+            parent[source] = source;
+            queue[0] = source;
+            int tail = 1;
+            for (int head = 0; head < tail; head++) {
+                int node = queue[head];
+                for (int e = graph.offsets[node]; e < graph.offsets[node + 1]; e++) {
+                    int next = graph.targets[e];
+                    if (distance[next] != UNREACHED) continue;
+                    distance[next] = distance[node] + 1;
+                    parent[next] = node;
+                    queue[tail++] = next;
+                }
+            }
+            visited = tail;
+            return distance[queue[tail - 1]];
+        }
+
+        /** 上次遍历中最远的局面之一。 */
+        int last() {
+            return queue[visited - 1];
+        }
+
+        /** 从 node 沿上次遍历的父指针往回走 steps 步。 */
+        int midpoint(int node, int steps) {
+            for (int i = 0; i < steps; i++) node = parent[node];
+            return node;
+        }
+
+        /** 上次遍历按距离分层，layers()[i] 为距离为 i 的全部局面。 */
+        int[][] layers() {
+            int eccentricity = distance[last()];
+            int[] counts = new int[eccentricity + 1];
+            for (int i = 0; i < visited; i++) counts[distance[queue[i]]]++;
+            int[][] layers = new int[eccentricity + 1][];
+            for (int d = 0; d <= eccentricity; d++) layers[d] = new int[counts[d]];
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < visited; i++) {
+                int d = distance[queue[i]];
+                layers[d][counts[d]++] = queue[i];
+            }
+            return layers;
+        }
+    }
+
+    // 建图：[from, to) 区间内每个排名的邻居排名，区间之间并行
+    @SuppressWarnings("serial")
+    private final class RankGraphTask extends RecursiveTask<RankGraph> {
+        private final int from;
+        private final int to;
+
+        RankGraphTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected RankGraph compute() {
+            if (to - from > CHUNK) {
+                int mid = (from + to) >>> 1;
+                RankGraphTask left = new RankGraphTask(from, mid);
+                left.fork();
+                RankGraph right = new RankGraphTask(mid, to).compute();
+                RankGraph leftResult = left.join();
+                int leftEdges = leftResult.targets.length;
+                int[] offsets = Arrays.copyOf(leftResult.offsets, to - from + 1);
+                for (int i = 1; i < right.offsets.length; i++) {
+                    offsets[mid - from + i] = leftEdges + right.offsets[i];
+                }
+                int[] targets = Arrays.copyOf(leftResult.targets, leftEdges + right.targets.length);
+                System.arraycopy(right.targets, 0, targets, leftEdges, right.targets.length);
+                return new RankGraph(offsets, targets);
+            }
+            long[] boards = new long[generator.maxMoves()];
+            int[] offsets = new int[to - from + 1];
+            int[] targets = new int[Math.max(16, (to - from) * 4)];
+            int count = 0;
+            for (int r = from; r < to; r++) {
+                int n = generator.expand(ranker.unrank(r), boards, null);
+                if (count + n > targets.length) targets = Arrays.copyOf(targets, Math.max(count + n, targets.length * 2));
+                for (int j = 0; j < n; j++) targets[count++] = (int) ranker.rank(boards[j]);
+                offsets[r - from + 1] = count;
+            }
+            return new RankGraph(offsets, Arrays.copyOf(targets, count));
+        }
+    }
+
+    // 求 nodes[from, to) 中各局面离心率的最大值；每个叶子任务用自己的 BFS 缓冲区
+    @SuppressWarnings("serial")
+    private static final class EccentricityTask extends RecursiveTask<Integer> {
+        private final RankGraph graph;
+        private final int[] nodes;
+        private final int from;
+        private final int to;
+
+        EccentricityTask(RankGraph graph, int[] nodes, int from, int to) {
+            this.graph = graph;
+            this.nodes = nodes;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (to - from > ECCENTRICITY_CHUNK) {
+                int mid = (from + to) >>> 1;
+                EccentricityTask left = new EccentricityTask(graph, nodes, from, mid);
+                left.fork();
+                int right = new EccentricityTask(graph, nodes, mid, to).compute();
+                return Math.max(left.join(), right);
+            }
+            Bfs bfs = new Bfs(graph);
+            int max = 0;
+            for (int i = from; i < to; i++) max = Math.max(max, bfs.run(nodes[i]));
+            return max;
+        }
+    }
+
+    // 扩展前沿的 [from, to) 区间，返回新认领的下一层排名；认领靠 CAS，每个局面只进入下一层一次
+    @SuppressWarnings("serial")
+    private final class LayerTask extends RecursiveTask<int[]> {
+        private final AtomicIntegerArray distances;
+        private final int[] layer;
+        private final int from;
+        private final int to;
+        private final int depth;
+
+        LayerTask(AtomicIntegerArray distances, int[] layer, int from, int to, int depth) {
+            this.distances = distances;
+            this.layer = layer;
+            this.from = from;
+            this.to = to;
+            this.depth = depth;
+        }
+
+        @Override
+        protected int[] compute() {
+            if (to - from > CHUNK) {
+                int mid = (from + to) >>> 1;
+                LayerTask left = new LayerTask(distances, layer, from, mid, depth);
+                left.fork();
+                int[] right = new LayerTask(distances, layer, mid, to, depth).compute();
+                int[] leftResult = left.join();
+                int[] merged = Arrays.copyOf(leftResult, leftResult.length + right.length);
+                System.arraycopy(right, 0, merged, leftResult.length, right.length);
+                return merged;
+            }
+            long[] boards = new long[generator.maxMoves()];
+            int[] next = new int[Math.max(16, (to - from) * 2)];
+            int count = 0;
+            for (int i = from; i < to; i++) {
+                int n = generator.expand(ranker.unrank(layer[i]), boards, null);
+                for (int j = 0; j < n; j++) {
+                    int r = (int) ranker.rank(boards[j]);
+                    if (distances.get(r) != UNREACHED || !distances.compareAndSet(r, UNREACHED, depth)) continue;
+                    if (count == next.length) next = Arrays.copyOf(next, count * 2);
+                    next[count++] = r;
+                }
+            }
+            return Arrays.copyOf(next, count);
+        }
+    }
+}
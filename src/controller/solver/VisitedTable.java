@@ -0,0 +1,34 @@
+package controller.solver;
+
+/**
+ * 已访问状态表：压缩棋盘 → 一个字节的附加值（例如首步编码）。
+ * 键 0 表示空棋盘，不会作为搜索状态出现，因此被用作空槽标记。
+ */
+public interface VisitedTable extends AutoCloseable {
+    int ABSENT = -1;
+
+    /** 键不存在时写入并返回 true；已存在时不修改并返回 false。value 取 0~255。 */
+    boolean putIfAbsent(long key, int value);
+
+    /** 返回键对应的值，不存在时返回 {@link #ABSENT}。 */
+    int get(long key);
+
+    long size();
+
+    @Override
+    void close();
+
+    static VisitedTable create(boolean offHeap) {
+        return offHeap ? new OffHeapVisitedTable() : new HeapVisitedTable();
+    }
+
+    /** 64 位混合函数（MurmurHash3 finalizer），用于开放寻址。 */
+    static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+}
@@ -0,0 +1,67 @@
+package model;
+
+/**
+ * Board 是一个不可变的棋盘局面：尺寸 + 压缩后的格子（见 {@link BoardCodec}）。
+ * 求解器、缓存等只读场景使用它，避免共享可变的 {@link MapModel}。
+ */
+public final class Board {
+    private final int width;
+    private final int height;
+    private final long cells;
+
+    public Board(int width, int height, long cells) {
+        if (!BoardCodec.fits(width, height)) {
+            throw new IllegalArgumentException("Board " + width + "x" + height + " does not fit in a long");
+        }
+        this.width = width;
+        this.height = height;
+        this.cells = cells;
+    }
+
+    public static Board of(int width, int height, long cells) {
+        return new Board(width, height, cells);
+    }
+
+    public static Board of(int[][] matrix) {
+        return of(matrix[0].length, matrix.length, BoardCodec.pack(matrix));
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /** 压缩后的格子。 */
+    public long getCells() {
+        return cells;
+    }
+
+    public int getId(int row, int col) {
+        return BoardCodec.get(cells, row * width + col);
+    }
+
+    public int[][] toMatrix() {
+        return BoardCodec.unpack(cells, width, height);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Board)) return false;
+        Board b = (Board) o;
+        return cells == b.cells && width == b.width && height == b.height;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * width + height) + Long.hashCode(cells);
+    }
+
+    @Override
+    public String toString() {
+        return java.util.Arrays.deepToString(toMatrix());
+    }
+}
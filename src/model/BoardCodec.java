@@ -0,0 +1,70 @@
+package model;
+
+/**
+ * BoardCodec 把 ID 矩阵压缩成一个 long：每格 3 位（ID 0~7），按行优先排列。
+ * 4×5 的标准棋盘只占 60 位，搜索时可以直接用 long 做状态键和位运算。
+ */
+public final class BoardCodec {
+    public static final int BITS_PER_CELL = 3;
+    public static final long CELL_MASK = 0b111L;
+    public static final int MAX_CELLS = 64 / BITS_PER_CELL;
+
+    private BoardCodec() {
+    }
+
+    /** 判断给定尺寸的棋盘能否压缩进一个 long。 */
+    public static boolean fits(int width, int height) {
+        return width > 0 && height > 0 && width * height <= MAX_CELLS;
+    }
+
+    /** 把矩阵压缩成 long；尺寸过大或 ID 超出 0~7 时抛出异常。 */
+    public static long pack(int[][] matrix) {
+        int height = matrix.length;
+        int width = matrix[0].length;
+        if (!fits(width, height)) {
+            throw new IllegalArgumentException("Board " + width + "x" + height + " does not fit in a long");
+        }
+        long packed = 0;
+        for (int r = 0; r < height; r++) {
+            for (int c = 0; c < width; c++) {
+                int id = matrix[r][c];
+                if (id < 0 || id > CELL_MASK) {
+                    throw new IllegalArgumentException("Cell id out of range: " + id);
+                }
+                packed |= (long) id << shift(r * width + c);
+            }
+        }
+        return packed;
+    }
+
+    /** 把 long 还原成 height×width 的矩阵。 */
+    public static int[][] unpack(long packed, int width, int height) {
+        int[][] matrix = new int[height][width];
+        for (int r = 0; r < height; r++) {
+            for (int c = 0; c < width; c++) {
+                matrix[r][c] = get(packed, r * width + c);
+            }
+        }
+        return matrix;
+    }
+
+    /** 读取第 cell 格（行优先下标）的 ID。 */
+    public static int get(long packed, int cell) {
+        return (int) ((packed >>> shift(cell)) & CELL_MASK);
+    }
+
+    /** 写入第 cell 格的 ID，返回新的 long。 */
+    public static long set(long packed, int cell, int id) {
+        int s = shift(cell);
+        return (packed & ~(CELL_MASK << s)) | ((long) id << s);
+    }
+
+    /** 第 cell 格在 long 中占用的 3 位掩码。 */
+    public static long cellMask(int cell) {
+        return CELL_MASK << shift(cell);
+    }
+
+    public static int shift(int cell) {
+        return cell * BITS_PER_CELL;
+    }
+}
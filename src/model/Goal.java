@@ -0,0 +1,138 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Goal 描述一关的胜利条件：若干个“某 ID 的方块必须覆盖某块区域”的约束。
+ * 约束可以编译成压缩棋盘（见 {@link BoardCodec}）上的一对 mask/value，
+ * 于是无论约束有多少条，胜利判定都只是 {@code (board & mask) == value}。
+ */
+public final class Goal {
+    /** 经典规则：曹操（ID 7）到达底部出口 (3,1)。 */
+    public static final Goal CLASSIC = new Goal(new int[0]).require(7, 3, 1, 2, 2);
+
+    // 每条约束占 5 个 int：id, row, col, height, width
+    private final int[] targets;
+
+    private Goal(int[] targets) {
+        this.targets = targets;
+    }
+
+    /** 不含任何约束的空目标，用于链式声明。 */
+    public static Goal empty() {
+        return new Goal(new int[0]);
+    }
+
+    /**
+     * 追加一条约束：以 (row, col) 为左上角、height×width 的区域必须全部是 id，
+     * 返回新的 Goal（原对象不变）。
+     */
+    public Goal require(int id, int row, int col, int height, int width) {
+        if (id <= 0 || id > BoardCodec.CELL_MASK) {
+            throw new IllegalArgumentException("Goal id out of range: " + id);
+        }
+        if (row < 0 || col < 0 || height <= 0 || width <= 0) {
+            throw new IllegalArgumentException("Invalid goal region");
+        }
+        int[] next = Arrays.copyOf(targets, targets.length + 5);
+        next[targets.length] = id;
+        next[targets.length + 1] = row;
+        next[targets.length + 2] = col;
+        next[targets.length + 3] = height;
+        next[targets.length + 4] = width;
+        return new Goal(next);
+    }
+
+    public int targetCount() {
+        return targets.length / 5;
+    }
+
+    public int targetId(int i) {
+        return targets[i * 5];
+    }
+
+    public int targetRow(int i) {
+        return targets[i * 5 + 1];
+    }
+
+    public int targetCol(int i) {
+        return targets[i * 5 + 2];
+    }
+
+    public int targetHeight(int i) {
+        return targets[i * 5 + 3];
+    }
+
+    public int targetWidth(int i) {
+        return targets[i * 5 + 4];
+    }
+
+    /** 编译出的掩码：所有目标格对应的 3 位全部置 1。 */
+    public long mask(int boardWidth) {
+        long mask = 0;
+        for (int t = 0; t < targets.length; t += 5) {
+            for (int r = 0; r < targets[t + 3]; r++) {
+                for (int c = 0; c < targets[t + 4]; c++) {
+                    mask |= BoardCodec.cellMask(cell(t, r, c, boardWidth));
+                }
+            }
+        }
+        return mask;
+    }
+
+    /** 编译出的期望值：目标格上写入要求的 ID。 */
+    public long value(int boardWidth) {
+        long value = 0;
+        for (int t = 0; t < targets.length; t += 5) {
+            for (int r = 0; r < targets[t + 3]; r++) {
+                for (int c = 0; c < targets[t + 4]; c++) {
+                    value = BoardCodec.set(value, cell(t, r, c, boardWidth), targets[t]);
+                }
+            }
+        }
+        return value;
+    }
+
+    /** 在压缩棋盘上判定，调用方应在循环外缓存 mask/value。 */
+    public boolean isReached(long packed, int boardWidth) {
+        return (packed & mask(boardWidth)) == value(boardWidth);
+    }
+
+    /** 在普通矩阵上判定，供界面等不走压缩路径的地方使用。 */
+    public boolean isReached(int[][] matrix) {
+        for (int t = 0; t < targets.length; t += 5) {
+            int id = targets[t];
+            for (int r = targets[t + 1]; r < targets[t + 1] + targets[t + 3]; r++) {
+                for (int c = targets[t + 2]; c < targets[t + 2] + targets[t + 4]; c++) {
+                    if (r >= matrix.length || c >= matrix[r].length || matrix[r][c] != id) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        return o instanceof Goal && Arrays.equals(targets, ((Goal) o).targets);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(targets);
+    }
+
+    private int cell(int t, int r, int c, int boardWidth) {
+        int col = targets[t + 2] + c;
+        if (col >= boardWidth) {
+            throw new IllegalArgumentException("Goal region exceeds board width");
+        }
+        int cell = (targets[t + 1] + r) * boardWidth + col;
+        if (cell >= BoardCodec.MAX_CELLS) {
+            throw new IllegalArgumentException("Goal region exceeds packed board");
+        }
+        return cell;
+    }
+}
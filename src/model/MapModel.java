@@ -1,92 +1,465 @@
 package model;
 
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Stack;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Predicate;
 
 /**
  * MapModel 管理华容道棋盘的状态，包括原始矩阵、当前矩阵和唯一ID标记。
+ * <p>
+ * 棋盘按行优先存成一维数组，连同方块表放在一个工作副本里，写入在 {@link StampedLock} 的写锁内原地修改，
+ * 移动一块只改这块的格子，不分配内存。读单格用乐观读，通常不加锁；
+ * {@link #snapshot()} 返回不可变的拷贝，只在棋盘变化后第一次调用时复制，
+ * 之后的读取都来自同一个一致的棋盘（求解器、自动存档、绘制线程都可以这样用）。
+ * 修改完成后通过 {@link ModelListener} 通知哪些方块移动了、哪些格子变了。
  */
 public class MapModel {
-    private int[][] matrix;
-    private int[][] uniqueIds;
-    private final int[][] initialMatrix;
+    private final StampedLock lock = new StampedLock();
+    private final Snapshot work; // 工作副本，只在写锁内修改
+    private volatile Snapshot published; // 最近一次拷贝出的快照，棋盘变化时清空
+    private final int[] initialIds;
     private final int height;
     private final int width;
+    private volatile Goal goal = Goal.CLASSIC;
+
+    // 变更通知：派发时持有 events，保证一个批次的回调不与其他批次交错；订阅者数组写时复制
+    private volatile ModelListener[] listeners = new ModelListener[0];
+    private final Object events = new Object();
+    private int batchDepth;
+    private final BitSet pendingDirty;
     //private final int[][] original_matrix;
 
+    /**
+     * 某一时刻的完整棋盘：方块 ID 和唯一 ID，以及由此得到的方块表。对外发布的快照创建后不再改变；
+     * 模型内部的工作副本用同样的结构，只在写锁内原地修改。
+     * <p>
+     * 方块表每块占 5 个 int：id, 左上角行, 左上角列, 高, 宽；另有“格 → 方块下标”的索引和占用位图，
+     * 所以按格找方块、判断能否移动、执行移动都只与方块本身的格数有关。
+     */
+    public static final class Snapshot {
+        private static final int STRIDE = 5;
+
+        private final int width;
+        private final int height;
+        private final int[] ids;
+        private final int[] uniqueIds;
+        private final int[] pieces; // 按格数预留容量，前 pieceCount 项有效
+        private final int[] cellPiece;
+        private final long[] occupancy;
+        private int pieceCount;
+
+        private Snapshot(int width, int height, int[] ids, int[] uniqueIds) {
+            this.width = width;
+            this.height = height;
+            this.ids = ids;
+            this.uniqueIds = uniqueIds;
+            this.cellPiece = new int[ids.length];
+            this.occupancy = new long[(ids.length + 63) >>> 6];
+            this.pieces = new int[ids.length * STRIDE];
+            scanPieces();
+        }
+
+        private Snapshot(Snapshot other) {
+            this.width = other.width;
+            this.height = other.height;
+            this.ids = other.ids.clone();
+            this.uniqueIds = other.uniqueIds.clone();
+            this.pieces = other.pieces.clone();
+            this.cellPiece = other.cellPiece.clone();
+            this.occupancy = other.occupancy.clone();
+            this.pieceCount = other.pieceCount;
+        }
+
+        /** 越界返回 -1。 */
+        public int getId(int row, int col) {
+            return inside(row, col) ? ids[row * width + col] : -1;
+        }
+
+        /** 越界返回 0。 */
+        public int getUniqueId(int row, int col) {
+            return inside(row, col) ? uniqueIds[row * width + col] : 0;
+        }
+
+        public int[][] toMatrix() {
+            return unflatten(ids, width, height);
+        }
+
+        public int[][] toUniqueIdsMatrix() {
+            return unflatten(uniqueIds, width, height);
+        }
+
+        public int pieceCount() {
+            return pieceCount;
+        }
+
+        /** 覆盖 (row, col) 的方块下标；空格或越界返回 -1。 */
+        public int pieceAt(int row, int col) {
+            return inside(row, col) ? cellPiece[row * width + col] : -1;
+        }
+
+        public int pieceId(int piece) {
+            return pieces[piece * STRIDE];
+        }
+
+        public int pieceRow(int piece) {
+            return pieces[piece * STRIDE + 1];
+        }
+
+        public int pieceCol(int piece) {
+            return pieces[piece * STRIDE + 2];
+        }
+
+        public int pieceHeight(int piece) {
+            return pieces[piece * STRIDE + 3];
+        }
+
+        public int pieceWidth(int piece) {
+            return pieces[piece * STRIDE + 4];
+        }
+
+        public boolean isOccupied(int row, int col) {
+            if (!inside(row, col)) return true;
+            int cell = row * width + col;
+            return (occupancy[cell >>> 6] & 1L << cell) != 0;
+        }
+
+        /** 方块能否朝 direction 移动一格：只检查移动后新覆盖的那一排格子。 */
+        public boolean canMove(int piece, Direction direction) {
+            int row = pieceRow(piece) + direction.getRow();
+            int col = pieceCol(piece) + direction.getCol();
+            int h = pieceHeight(piece);
+            int w = pieceWidth(piece);
+            if (row < 0 || col < 0 || row + h > height || col + w > width) return false;
+            for (int r = row; r < row + h; r++) {
+                for (int c = col; c < col + w; c++) {
+                    int cell = r * width + c;
+                    if ((occupancy[cell >>> 6] & 1L << cell) != 0 && cellPiece[cell] != piece) return false;
+                }
+            }
+            return true;
+        }
+
+        /** 每条目标约束只检查目标区域内的格子。 */
+        public boolean isReached(Goal goal) {
+            for (int t = 0; t < goal.targetCount(); t++) {
+                int r0 = goal.targetRow(t);
+                int c0 = goal.targetCol(t);
+                if (r0 + goal.targetHeight(t) > height || c0 + goal.targetWidth(t) > width) return false;
+                for (int r = r0; r < r0 + goal.targetHeight(t); r++) {
+                    for (int c = c0; c < c0 + goal.targetWidth(t); c++) {
+                        if (ids[r * width + c] != goal.targetId(t)) return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        // 原地移动一块（只用于工作副本）：只改这块原来和现在覆盖的格子
+        private void shift(int piece, Direction direction) {
+            int row = pieceRow(piece);
+            int col = pieceCol(piece);
+            int h = pieceHeight(piece);
+            int w = pieceWidth(piece);
+            int id = pieceId(piece);
+            int uniqueId = uniqueIds[row * width + col];
+            for (int r = row; r < row + h; r++) {
+                for (int c = col; c < col + w; c++) {
+                    int cell = r * width + c;
+                    ids[cell] = 0;
+                    uniqueIds[cell] = 0;
+                    cellPiece[cell] = -1;
+                    occupancy[cell >>> 6] &= ~(1L << cell);
+                }
+            }
+            row += direction.getRow();
+            col += direction.getCol();
+            for (int r = row; r < row + h; r++) {
+                for (int c = col; c < col + w; c++) {
+                    int cell = r * width + c;
+                    ids[cell] = id;
+                    uniqueIds[cell] = uniqueId;
+                    cellPiece[cell] = piece;
+                    occupancy[cell >>> 6] |= 1L << cell;
+                }
+            }
+            pieces[piece * STRIDE + 1] = row;
+            pieces[piece * STRIDE + 2] = col;
+        }
+
+        // 换成另一份棋盘的内容（只用于工作副本）
+        private void load(int[] newIds, int[] newUniqueIds) {
+            System.arraycopy(newIds, 0, ids, 0, ids.length);
+            System.arraycopy(newUniqueIds, 0, uniqueIds, 0, uniqueIds.length);
+            scanPieces();
+        }
+
+        /*
+         * 按行优先找每块的左上角并确定形状，规则与压缩棋盘一致：
+         * 1 为 1x1，2 为横向 1x2，3-6 右侧同 ID 时为横向、否则为竖向 2x1，7 为 2x2，其余 ID 按 1x1。
+         */
+        private void scanPieces() {
+            Arrays.fill(cellPiece, -1);
+            Arrays.fill(occupancy, 0);
+            int[] result = pieces;
+            int count = 0;
+            for (int cell = 0; cell < ids.length; cell++) {
+                int id = ids[cell];
+                if (id == 0 || cellPiece[cell] >= 0) continue;
+                int row = cell / width;
+                int col = cell % width;
+                int h = 1;
+                int w = 1;
+                if (id == 2) {
+                    w = 2;
+                } else if (id >= 3 && id <= 6) {
+                    boolean horizontal = col + 1 < width && ids[cell + 1] == id && cellPiece[cell + 1] < 0;
+                    if (horizontal) w = 2;
+                    else h = 2;
+                } else if (id == 7) {
+                    h = 2;
+                    w = 2;
+                }
+                h = Math.min(h, height - row);
+                w = Math.min(w, width - col);
+                for (int r = row; r < row + h; r++) {
+                    for (int c = col; c < col + w; c++) {
+                        int covered = r * width + c;
+                        cellPiece[covered] = count;
+                        occupancy[covered >>> 6] |= 1L << covered;
+                    }
+                }
+                int base = count * STRIDE;
+                result[base] = id;
+                result[base + 1] = row;
+                result[base + 2] = col;
+                result[base + 3] = h;
+                result[base + 4] = w;
+                count++;
+            }
+            pieceCount = count;
+        }
+
+        private boolean inside(int row, int col) {
+            return row >= 0 && row < height && col >= 0 && col < width;
+        }
+    }
+
+    /**
+     * 一次批量修改：在当前棋盘的副本上读写，{@link #edit} 提交后一次性生效，
+     * 其他线程看不到改了一半的棋盘。
+     */
+    public final class Editor {
+        private final int[] ids;
+        private final int[] uniqueIds;
+
+        private Editor(Snapshot base) {
+            this.ids = base.ids.clone();
+            this.uniqueIds = base.uniqueIds.clone();
+        }
+
+        public int getId(int row, int col) {
+            return inside(row, col) ? ids[row * width + col] : -1;
+        }
+
+        public int getUniqueId(int row, int col) {
+            return inside(row, col) ? uniqueIds[row * width + col] : 0;
+        }
+
+        public void setId(int row, int col, int id) {
+            if (inside(row, col)) ids[row * width + col] = id;
+        }
+
+        /** 仅当置空或填空时生效。 */
+        public boolean setIdSafely(int row, int col, int id) {
+            if (!inside(row, col)) return false;
+            int index = row * width + col;
+            if (id != 0 && ids[index] != 0) return false;
+            ids[index] = id;
+            return true;
+        }
+
+        public void setUniqueId(int row, int col, int uniqueId) {
+            if (inside(row, col)) uniqueIds[row * width + col] = uniqueId;
+        }
+    }
+
     /**
      * 构造时深拷贝传入矩阵，并初始化 initialMatrix、uniqueIds。
      */
     public MapModel(int[][] matrix) {
         this.height = matrix.length;
         this.width = matrix[0].length;
-        this.matrix = new int[height][width];
-        this.initialMatrix = new int[height][width];
-        this.uniqueIds = new int[height][width];
-
+        this.initialIds = flatten(matrix, width, height);
+        this.work = new Snapshot(width, height, initialIds.clone(), new int[width * height]);
+        this.pendingDirty = new BitSet(width * height);
+    }
 
-        // 深拷贝初始矩阵
-        for (int i = 0; i < height; i++) {
-            System.arraycopy(matrix[i], 0, this.matrix[i], 0, width);
-            System.arraycopy(matrix[i], 0, this.initialMatrix[i], 0, width);
+    /** 当前棋盘的一致快照；棋盘没变时返回同一个对象，不加锁。 */
+    public Snapshot snapshot() {
+        Snapshot s = published;
+        if (s != null) return s;
+        long stamp = lock.readLock();
+        try {
+            s = published;
+            if (s == null) published = s = new Snapshot(work);
+            return s;
+        } finally {
+            lock.unlockRead(stamp);
         }
     }
 
     /**
-     * 安全地设置单元格 ID，仅当置空或填空时生效。
+     * 在副本上执行一组修改；action 返回 true 时原子地提交结果，返回 false 时放弃全部修改。
+     * action 在写锁内执行，不能再调用本模型的方法。
      */
-    public synchronized boolean setIdSafely(int row, int col, int id) {
-        if (checkInHeightSize(row) && checkInWidthSize(col)) {
-            if (id == 0 || matrix[row][col] == 0) {
-                matrix[row][col] = id;
-                return true;
+    public boolean edit(Predicate<Editor> action) {
+        BitSet dirty = new BitSet(width * height);
+        long stamp = lock.writeLock();
+        try {
+            Editor editor = new Editor(work);
+            if (!action.test(editor)) return false;
+            for (int cell = 0; cell < work.ids.length; cell++) {
+                if (work.ids[cell] != editor.ids[cell] || work.uniqueIds[cell] != editor.uniqueIds[cell]) {
+                    dirty.set(cell);
+                }
             }
+            // 逐格修改后无法知道哪些方块变了，重新扫描方块表
+            work.load(editor.ids, editor.uniqueIds);
+            published = null;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        if (!dirty.isEmpty()) {
+            synchronized (events) {
+                beginBatch();
+                pendingDirty.or(dirty);
+                endBatch();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 把覆盖 (row, col) 的方块朝 direction 移动一格，能移动时原子地提交。
+     * 只触及这块方块的格子和方块表中的一项。
+     */
+    public boolean movePiece(int row, int col, Direction direction) {
+        return moveAndGetOrigin(row, col, direction) >= 0;
+    }
+
+    /**
+     * 同 {@link #movePiece}，返回移动后方块左上角的格子下标（行优先），不能移动时返回 -1。
+     * 整个过程不分配内存：在工作副本上原地校验和修改，通知复用同一个脏格位图。
+     */
+    public int moveAndGetOrigin(int row, int col, Direction direction) {
+        int fromRow;
+        int fromCol;
+        int h;
+        int w;
+        int uniqueId;
+        long stamp = lock.writeLock();
+        try {
+            int piece = work.pieceAt(row, col);
+            if (piece < 0 || !work.canMove(piece, direction)) return -1;
+            fromRow = work.pieceRow(piece);
+            fromCol = work.pieceCol(piece);
+            h = work.pieceHeight(piece);
+            w = work.pieceWidth(piece);
+            uniqueId = work.getUniqueId(fromRow, fromCol);
+            published = null;
+            work.shift(piece, direction);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        int toRow = fromRow + direction.getRow();
+        int toCol = fromCol + direction.getCol();
+        publishMove(uniqueId, fromRow, fromCol, toRow, toCol, h, w);
+        return toRow * width + toCol;
+    }
+
+    /** 当前棋盘是否满足本关的胜利条件。 */
+    public boolean isGoalReached() {
+        Goal g = goal;
+        long stamp = lock.tryOptimisticRead();
+        boolean reached = work.isReached(g);
+        if (lock.validate(stamp)) return reached;
+        stamp = lock.readLock();
+        try {
+            return work.isReached(g);
+        } finally {
+            lock.unlockRead(stamp);
         }
-        return false;
+    }
+
+    /**
+     * 安全地设置单元格 ID，仅当置空或填空时生效。
+     */
+    public boolean setIdSafely(int row, int col, int id) {
+        return edit(e -> e.setIdSafely(row, col, id));
     }
 
     /** 获取单元格 ID，越界返回 -1。 */
-    public synchronized int getId(int row, int col) {
-        return checkInHeightSize(row) && checkInWidthSize(col) ? matrix[row][col] : -1;
+    public int getId(int row, int col) {
+        long stamp = lock.tryOptimisticRead();
+        int id = work.getId(row, col);
+        if (lock.validate(stamp)) return id;
+        stamp = lock.readLock();
+        try {
+            return work.getId(row, col);
+        } finally {
+            lock.unlockRead(stamp);
+        }
     }
 
     /** 直接设置单元格 ID（慎用）。 */
-    public synchronized void setId(int row, int col, int id) {
-        if (checkInHeightSize(row) && checkInWidthSize(col)) {
-            matrix[row][col] = id;
-        }
+    public void setId(int row, int col, int id) {
+        if (!inside(row, col)) return;
+        edit(e -> {
+            e.setId(row, col, id);
+            return true;
+        });
     }
 
     /** 获取单元格的唯一 ID，用于多格方块标识。 */
-    public synchronized int getUniqueId(int row, int col) {
-        return checkInHeightSize(row) && checkInWidthSize(col) ? uniqueIds[row][col] : 0;
+    public int getUniqueId(int row, int col) {
+        long stamp = lock.tryOptimisticRead();
+        int uniqueId = work.getUniqueId(row, col);
+        if (lock.validate(stamp)) return uniqueId;
+        stamp = lock.readLock();
+        try {
+            return work.getUniqueId(row, col);
+        } finally {
+            lock.unlockRead(stamp);
+        }
     }
 
     /** 设置单元格的唯一 ID。 */
-    public synchronized void setUniqueId(int row, int col, int uniqueId) {
-        if (checkInHeightSize(row) && checkInWidthSize(col)) {
-            uniqueIds[row][col] = uniqueId;
-        }
+    public void setUniqueId(int row, int col, int uniqueId) {
+        if (!inside(row, col)) return;
+        edit(e -> {
+            e.setUniqueId(row, col, uniqueId);
+            return true;
+        });
     }
 
     /**
      * 重置为初始状态：恢复 matrix，清空 uniqueIds。
      */
-    public synchronized void reset() {
-        for (int i = 0; i < height; i++) {
-            System.arraycopy(initialMatrix[i], 0, matrix[i], 0, width);
-            Arrays.fill(uniqueIds[i], 0);
-        }
+    public void reset() {
+        replaceKeepingPieces(initialIds.clone());
     }
 
     /** 打印当前矩阵和唯一 ID 信息，便于调试。 */
-    public synchronized void printDebugInfo() {
+    public void printDebugInfo() {
+        Snapshot s = snapshot();
         System.out.println("Current Map State:");
-        for (int[] row : matrix) {
+        for (int[] row : s.toMatrix()) {
             System.out.println(Arrays.toString(row));
         }
         System.out.println("Unique IDs:");
-        for (int[] row : uniqueIds) {
+        for (int[] row : s.toUniqueIdsMatrix()) {
             System.out.println(Arrays.toString(row));
         }
     }
@@ -109,74 +482,75 @@ public class MapModel {
         return height;
     }
 
+    /** 当前关卡的胜利条件，默认为经典的曹操出口。 */
+    public Goal getGoal() {
+        return goal;
+    }
+
+    public void setGoal(Goal goal) {
+        this.goal = goal != null ? goal : Goal.CLASSIC;
+    }
+
     /**
      * 获取当前矩阵的深拷贝，避免外部修改。
      */
-    public synchronized int[][] getMatrix() {
-        int[][] copy = new int[height][width];
-        for (int i = 0; i < height; i++) {
-            System.arraycopy(matrix[i], 0, copy[i], 0, width);
-        }
-        return copy;
+    public int[][] getMatrix() {
+        return snapshot().toMatrix();
     }
 
     /**
      * 设置新的矩阵状态；要求尺寸一致，并清空 uniqueIds。
      */
-    public synchronized void setMatrix(int[][] newMatrix) {
+    public void setMatrix(int[][] newMatrix) {
         if (newMatrix.length != height || newMatrix[0].length != width) {
             throw new IllegalArgumentException("Matrix dimensions must match model size");
         }
-        for (int i = 0; i < height; i++) {
-            System.arraycopy(newMatrix[i], 0, this.matrix[i], 0, width);
-            Arrays.fill(uniqueIds[i], 0);
-        }
+        replaceBoard(flatten(newMatrix, width, height), new int[width * height]);
     }
 
     public void setUniqueIds(int[][] uniqueIds) {
-        for (int i = 0; i < uniqueIds.length; i++) {
-            this.uniqueIds[i] = Arrays.copyOf(uniqueIds[i], uniqueIds[i].length);
+        int[] flat = flatten(uniqueIds, width, height);
+        long stamp = lock.writeLock();
+        try {
+            published = null;
+            System.arraycopy(flat, 0, work.uniqueIds, 0, flat.length);
+        } finally {
+            lock.unlockWrite(stamp);
         }
+        fireBoardReplaced();
     }
 
-    public synchronized int[] getEmptyPosition() {
-        for (int i = 0; i < height; i++) {
-            for (int j = 0; j < width; j++) {
-                if (matrix[i][j] == 0) {
-                    return new int[]{i, j};
-                }
+    public int[] getEmptyPosition() {
+        int[] ids = snapshot().ids;
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] == 0) {
+                return new int[]{i / width, i % width};
             }
         }
         return null;
     }
 
     // 生成当前状态的哈希值（用于去重）
-    public synchronized long getStateHash() {
+    public long getStateHash() {
         long hash = 0;
-        for (int i = 0; i < height; i++) {
-            for (int j = 0; j < width; j++) {
-                hash = 31 * hash + matrix[i][j];
-            }
+        for (int id : snapshot().ids) {
+            hash = 31 * hash + id;
         }
         return hash;
     }
 
-    // 记录移动历史（用于回退）
-    private final Stack<int[][]> moveHistory = new Stack<>();
+    // 记录移动历史（用于回退）；快照不可变，直接入栈即可
+    private final Stack<Snapshot> moveHistory = new Stack<>();
 
     // 保存当前状态到历史记录
-    public synchronized void saveState() {
-        int[][] copy = new int[height][width];
-        for (int i = 0; i < height; i++) {
-            System.arraycopy(matrix[i], 0, copy[i], 0, width);
-        }
-        moveHistory.push(copy);
+    public void saveState() {
+        moveHistory.push(snapshot());
     }
 
     // 回退到上一步
-    public synchronized boolean undo() {
+    public boolean undo() {
         if (!moveHistory.isEmpty()) {
-            matrix = moveHistory.pop();
+            replaceKeepingPieces(moveHistory.pop().ids.clone());
             return true;
         }
         return false;
@@ -184,26 +558,244 @@ public class MapModel {
 
     // 复制矩阵的方法
     public int[][] getMatrixCopy() {
-        int[][] copy = new int[getHeight()][getWidth()];
-        for (int i = 0; i < getHeight(); i++) {
-            System.arraycopy(this.matrix[i], 0, copy[i], 0, getWidth());
+        return snapshot().toMatrix();
+    }
+
+    public int[][] getUniqueIdsMatrix() {
+        return snapshot().toUniqueIdsMatrix();
+    }
+
+    public void restoreState(int[][] matrix, int[][] uniqueIds) {
+        // 深度拷贝恢复
+        replaceBoard(flatten(matrix, width, height), flatten(uniqueIds, width, height));
+    }
+
+    /** 恢复到 ids（行优先）表示的局面；仍在原处或只是换了位置的方块保留原来的唯一 ID。 */
+    public void restoreIds(int[] ids) {
+        if (ids.length != width * height) {
+            throw new IllegalArgumentException("Expected " + width * height + " cells, got " + ids.length);
+        }
+        replaceKeepingPieces(ids);
+    }
+
+    /** 把当前棋盘的 ID（行优先）复制到 target，不分配内存。 */
+    public void copyIds(int[] target) {
+        if (target.length != width * height) {
+            throw new IllegalArgumentException("Expected " + width * height + " cells, got " + target.length);
+        }
+        long stamp = lock.readLock();
+        try {
+            System.arraycopy(work.ids, 0, target, 0, target.length);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public void addListener(ModelListener listener) {
+        synchronized (events) {
+            ModelListener[] next = Arrays.copyOf(listeners, listeners.length + 1);
+            next[next.length - 1] = listener;
+            listeners = next;
+        }
+    }
+
+    public void removeListener(ModelListener listener) {
+        synchronized (events) {
+            ModelListener[] current = listeners;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i] != listener) continue;
+                ModelListener[] next = new ModelListener[current.length - 1];
+                System.arraycopy(current, 0, next, 0, i);
+                System.arraycopy(current, i + 1, next, i, next.length - i);
+                listeners = next;
+                return;
+            }
         }
-        return copy;
     }
 
-    public synchronized int[][] getUniqueIdsMatrix() {
-        int[][] copy = new int[height][width];
+    /**
+     * 开始一个批次；批次可以嵌套，最外层的 {@link #endBatch()} 才通知 batchFinished。
+     * 多步操作（连续撤销、回放）包在一个批次里，订阅者只需在结束时刷新一次。
+     */
+    public void beginBatch() {
+        synchronized (events) {
+            if (batchDepth++ > 0) return;
+            pendingDirty.clear();
+            for (ModelListener l : listeners) l.batchStarted();
+        }
+    }
+
+    public void endBatch() {
+        synchronized (events) {
+            if (batchDepth == 0) throw new IllegalStateException("endBatch without beginBatch");
+            if (--batchDepth > 0) return;
+            for (ModelListener l : listeners) l.batchFinished(pendingDirty);
+        }
+    }
+
+    /*
+     * 换成 targetIds 表示的局面，并尽量保留方块的身份：先认领原地未动的方块，
+     * 再把同 ID 同形状的方块按顺序配对为“移动”，配上的方块带着唯一 ID 走。
+     * 全部方块都能配对时按移动逐块通知，否则通知整盘替换。
+     */
+    private void replaceKeepingPieces(int[] targetIds) {
+        Snapshot current;
+        Snapshot next = new Snapshot(width, height, targetIds.clone(), new int[width * height]);
+        boolean complete;
+        long stamp = lock.writeLock();
+        try {
+            current = new Snapshot(work);
+            int[] source = new int[next.pieceCount()];
+            boolean[] taken = new boolean[current.pieceCount()];
+            Arrays.fill(source, -1);
+            for (int t = 0; t < source.length; t++) {
+                int c = current.pieceAt(next.pieceRow(t), next.pieceCol(t));
+                if (c >= 0 && !taken[c] && samePlace(current, c, next, t)) {
+                    source[t] = c;
+                    taken[c] = true;
+                }
+            }
+            for (int t = 0; t < source.length; t++) {
+                for (int c = 0; c < taken.length && source[t] < 0; c++) {
+                    if (!taken[c] && sameShape(current, c, next, t)) {
+                        source[t] = c;
+                        taken[c] = true;
+                    }
+                }
+            }
+            complete = source.length == taken.length;
+            for (int t = 0; t < source.length; t++) {
+                if (source[t] < 0) {
+                    complete = false;
+                    continue;
+                }
+                int uniqueId = current.getUniqueId(current.pieceRow(source[t]), current.pieceCol(source[t]));
+                for (int r = next.pieceRow(t); r < next.pieceRow(t) + next.pieceHeight(t); r++) {
+                    for (int c = next.pieceCol(t); c < next.pieceCol(t) + next.pieceWidth(t); c++) {
+                        next.uniqueIds[r * width + c] = uniqueId;
+                    }
+                }
+            }
+            published = null;
+            work.load(next.ids, next.uniqueIds);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        if (complete) publishMoves(current, next);
+        else fireBoardReplaced();
+    }
+
+    // 整盘替换，不保留方块身份
+    private void replaceBoard(int[] ids, int[] uniqueIds) {
+        long stamp = lock.writeLock();
+        try {
+            published = null;
+            work.load(ids, uniqueIds);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        fireBoardReplaced();
+    }
+
+    private static boolean samePlace(Snapshot a, int p, Snapshot b, int q) {
+        return sameShape(a, p, b, q) && a.pieceRow(p) == b.pieceRow(q) && a.pieceCol(p) == b.pieceCol(q);
+    }
+
+    private static boolean sameShape(Snapshot a, int p, Snapshot b, int q) {
+        return a.pieceId(p) == b.pieceId(q) && a.pieceHeight(p) == b.pieceHeight(q)
+                && a.pieceWidth(p) == b.pieceWidth(q);
+    }
+
+    // 单块移动：脏区就是这块前后覆盖的格子，直接记入复用的位图
+    private void publishMove(int uniqueId, int fromRow, int fromCol, int toRow, int toCol, int h, int w) {
+        if (listeners.length == 0) return;
+        synchronized (events) {
+            beginBatch();
+            try {
+                for (ModelListener l : listeners) l.pieceMoved(uniqueId, fromRow, fromCol, toRow, toCol);
+                for (int r = 0; r < h; r++) {
+                    for (int c = 0; c < w; c++) {
+                        pendingDirty.set((fromRow + r) * width + fromCol + c);
+                        pendingDirty.set((toRow + r) * width + toCol + c);
+                    }
+                }
+            } finally {
+                endBatch();
+            }
+        }
+    }
+
+    // 按唯一 ID 对比前后两个快照，位置变了的方块各通知一次，整个过程是一个批次
+    private void publishMoves(Snapshot before, Snapshot after) {
+        synchronized (events) {
+            beginBatch();
+            try {
+                for (int p = 0; p < after.pieceCount(); p++) {
+                    int row = after.pieceRow(p);
+                    int col = after.pieceCol(p);
+                    int uniqueId = after.getUniqueId(row, col);
+                    int old = before.pieceAt(row, col);
+                    if (old >= 0 && before.getUniqueId(row, col) == uniqueId
+                            && before.pieceRow(old) == row && before.pieceCol(old) == col) {
+                        continue;
+                    }
+                    int from = findPiece(before, uniqueId, after.pieceId(p));
+                    if (from < 0) continue;
+                    for (ModelListener l : listeners) {
+                        l.pieceMoved(uniqueId, before.pieceRow(from), before.pieceCol(from), row, col);
+                    }
+                }
+                pendingDirty.or(diff(before, after));
+            } finally {
+                endBatch();
+            }
+        }
+    }
+
+    // 唯一 ID 未分配（为 0）时无法对应，返回 -1
+    private static int findPiece(Snapshot board, int uniqueId, int id) {
+        if (uniqueId == 0) return -1;
+        for (int p = 0; p < board.pieceCount(); p++) {
+            if (board.pieceId(p) == id && board.getUniqueId(board.pieceRow(p), board.pieceCol(p)) == uniqueId) {
+                return p;
+            }
+        }
+        return -1;
+    }
+
+    private static BitSet diff(Snapshot before, Snapshot after) {
+        BitSet dirty = new BitSet(before.ids.length);
+        for (int cell = 0; cell < before.ids.length; cell++) {
+            if (before.ids[cell] != after.ids[cell] || before.uniqueIds[cell] != after.uniqueIds[cell]) {
+                dirty.set(cell);
+            }
+        }
+        return dirty;
+    }
+
+    private void fireBoardReplaced() {
+        synchronized (events) {
+            for (ModelListener l : listeners) l.boardReplaced();
+        }
+    }
+
+    private boolean inside(int row, int col) {
+        return checkInHeightSize(row) && checkInWidthSize(col);
+    }
+
+    private static int[] flatten(int[][] matrix, int width, int height) {
+        int[] flat = new int[width * height];
         for (int i = 0; i < height; i++) {
-            System.arraycopy(uniqueIds[i], 0, copy[i], 0, width);
+            System.arraycopy(matrix[i], 0, flat, i * width, width);
         }
-        return copy;
+        return flat;
     }
 
-    public synchronized void restoreState(int[][] matrix, int[][] uniqueIds) {
-        // 深度拷贝恢复
+    private static int[][] unflatten(int[] flat, int width, int height) {
+        int[][] matrix = new int[height][width];
         for (int i = 0; i < height; i++) {
-            System.arraycopy(matrix[i], 0, this.matrix[i], 0, width);
-            System.arraycopy(uniqueIds[i], 0, this.uniqueIds[i], 0, width);
+            System.arraycopy(flat, i * width, matrix[i], 0, width);
         }
+        return matrix;
     }
 }
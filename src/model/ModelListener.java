@@ -0,0 +1,25 @@
+package model;
+
+import java.util.BitSet;
+
+/**
+ * 订阅 {@link MapModel} 的变化。每次修改都包在一个批次里：先 {@link #batchStarted()}，
+ * 随后是批次内每块移动过的方块，最后 {@link #batchFinished(BitSet)} 给出本批次改动过的格子（行优先下标）。
+ * 回调在完成修改的线程上执行，界面需要自行切回事件线程。
+ */
+public interface ModelListener {
+    default void batchStarted() {
+    }
+
+    /** 唯一 ID 为 uniqueId 的方块，左上角从 (fromRow, fromCol) 移到了 (toRow, toCol)。 */
+    default void pieceMoved(int uniqueId, int fromRow, int fromCol, int toRow, int toCol) {
+    }
+
+    /** 批次结束；dirtyCells 为本批次内 ID 或唯一 ID 改变过的格子。位图由模型复用，只在回调期间有效，不应修改。 */
+    default void batchFinished(BitSet dirtyCells) {
+    }
+
+    /** 整个棋盘被替换（换关、读档），无法描述为方块移动。 */
+    default void boardReplaced() {
+    }
+}
@@ -0,0 +1,241 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * 一局的走法树，用于撤销/重做：撤销后再走新的一步不会丢掉原来的分支，任何走过的局面都能跳回去。
+ * <p>
+ * 节点按创建顺序编号，0 是起始局面；每个节点只存父节点和从父节点走来的一步
+ * （{@code 移动前的左上角格子 * 4 + Direction.ordinal()}，与求解器的编码相同），都放在平行的 int 数组里。
+ * 另有首个子节点、下一个兄弟和“重做时走向的子节点”三个数组，用来找已有分支和决定重做的方向。
+ * 深度为 interval 整数倍的节点在第一次到达时存一份棋盘 ID 作为检查点，根节点总有检查点；
+ * 跳到任意节点时可以从最近的检查点祖先恢复再向下重放。
+ */
+public final class MoveTree {
+    public static final int ROOT = 0;
+    public static final int NONE = -1;
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 64;
+
+    private final int interval;
+    private int[] parents = new int[256];
+    private int[] moves = new int[256];
+    private int[] depths = new int[256];
+    private int[] firstChild = new int[256];
+    private int[] nextSibling = new int[256];
+    private int[] preferred = new int[256];
+    private int[][] checkpoints = new int[256][];
+    private int count;
+    private int current;
+
+    public MoveTree() {
+        this(DEFAULT_CHECKPOINT_INTERVAL);
+    }
+
+    public MoveTree(int interval) {
+        if (interval <= 0) throw new IllegalArgumentException("Checkpoint interval must be positive: " + interval);
+        this.interval = interval;
+    }
+
+    /**
+     * 由存档中的数组重建：parents[i] 为节点 i 的父节点（根为 {@link #NONE}，且父节点编号必须小于自身），
+     * moves[i] 为走到节点 i 的一步；rootIds 为起始局面（行优先）。非根节点的检查点在之后到达时补上。
+     */
+    public static MoveTree fromArrays(int[] rootIds, int[] parents, int[] moves, int current) {
+        if (parents.length == 0 || parents.length != moves.length || parents[ROOT] != NONE) {
+            throw new IllegalArgumentException("Malformed move tree");
+        }
+        if (current < 0 || current >= parents.length) {
+            throw new IllegalArgumentException("Current node out of range: " + current);
+        }
+        MoveTree tree = new MoveTree();
+        tree.clear(rootIds.clone());
+        for (int node = 1; node < parents.length; node++) {
+            if (parents[node] < 0 || parents[node] >= node) {
+                throw new IllegalArgumentException("Bad parent " + parents[node] + " for node " + node);
+            }
+            tree.addChild(parents[node], moves[node]);
+        }
+        tree.setCurrent(current);
+        return tree;
+    }
+
+    /** 清空，以 model 的当前局面为根。 */
+    public void reset(MapModel model) {
+        int[] ids = new int[model.getWidth() * model.getHeight()];
+        model.copyIds(ids);
+        clear(ids);
+    }
+
+    /**
+     * 从当前节点走了一步 move，model 应已走完；已有同样的分支时沿用，否则新建子节点。
+     * 返回新的当前节点。
+     */
+    public int record(int move, MapModel model) {
+        int child = childWithMove(current, move);
+        if (child == NONE) child = addChild(current, move);
+        preferred[current] = child;
+        current = child;
+        storeCheckpoint(child, model);
+        return child;
+    }
+
+    /** 到达 node 时调用：深度为检查点间隔整数倍且还没有检查点时，从 model 复制棋盘。 */
+    public void storeCheckpoint(int node, MapModel model) {
+        if (depths[node] % interval != 0 || checkpoints[node] != null) return;
+        int[] ids = new int[model.getWidth() * model.getHeight()];
+        model.copyIds(ids);
+        checkpoints[node] = ids;
+    }
+
+    /** 只移动当前节点，调用方负责让棋盘与之一致；沿途的重做方向改为指向 node。 */
+    public void setCurrent(int node) {
+        checkNode(node);
+        current = node;
+        for (int n = node; n != ROOT && preferred[parents[n]] != n; n = parents[n]) {
+            preferred[parents[n]] = n;
+        }
+    }
+
+    public int current() {
+        return current;
+    }
+
+    /** 节点数，包括根。 */
+    public int size() {
+        return count;
+    }
+
+    public int parent(int node) {
+        return parents[node];
+    }
+
+    /** 从父节点走到 node 的一步；根节点没有。 */
+    public int move(int node) {
+        if (node == ROOT) throw new IllegalArgumentException("Root has no move");
+        return moves[node];
+    }
+
+    public int depth(int node) {
+        return depths[node];
+    }
+
+    public int firstChild(int node) {
+        return firstChild[node];
+    }
+
+    public int nextSibling(int node) {
+        return nextSibling[node];
+    }
+
+    /** 重做时走向的子节点：最近一次从 node 走去的分支，没有走过时取最新建的分支；叶子返回 {@link #NONE}。 */
+    public int preferredChild(int node) {
+        return preferred[node] != NONE ? preferred[node] : firstChild[node];
+    }
+
+    /** 向上 steps 层的祖先，到根为止。 */
+    public int ancestor(int node, int steps) {
+        for (int i = 0; i < steps && node != ROOT; i++) node = parents[node];
+        return node;
+    }
+
+    /** a 和 b 最近的公共祖先。 */
+    public int commonAncestor(int a, int b) {
+        while (depths[a] > depths[b]) a = parents[a];
+        while (depths[b] > depths[a]) b = parents[b];
+        while (a != b) {
+            a = parents[a];
+            b = parents[b];
+        }
+        return a;
+    }
+
+    /** node 自身或最近的一个已存检查点的祖先。 */
+    public int checkpointAncestor(int node) {
+        while (checkpoints[node] == null) node = parents[node];
+        return node;
+    }
+
+    /** 节点的检查点棋盘 ID（行优先），不应修改；没有时返回 null。 */
+    public int[] checkpoint(int node) {
+        return checkpoints[node];
+    }
+
+    /**
+     * 补齐缺少的检查点（读档后只有根节点有），之后跳到任意节点最多重放一个检查点间隔。
+     * 在单独的模型上重放，不影响正在进行的局面；有走不通的步（存档损坏）时返回 false。
+     */
+    public boolean fillCheckpoints(int width) {
+        int[] root = checkpoints[ROOT];
+        int[][] matrix = new int[root.length / width][width];
+        for (int cell = 0; cell < root.length; cell++) matrix[cell / width][cell % width] = root[cell];
+        MapModel scratch = new MapModel(matrix);
+        Direction[] directions = Direction.values();
+        int[] path = new int[interval];
+        for (int node = 1; node < count; node++) {
+            if (depths[node] % interval != 0 || checkpoints[node] != null) continue;
+            int from = node;
+            for (int i = interval - 1; i >= 0; i--) {
+                path[i] = from;
+                from = parents[from];
+            }
+            // from 的深度也是 interval 的整数倍且编号更小，检查点已经有了
+            scratch.restoreIds(checkpoints[from]);
+            for (int n : path) {
+                int cell = moves[n] / 4;
+                if (scratch.moveAndGetOrigin(cell / width, cell % width, directions[moves[n] & 3]) < 0) return false;
+            }
+            int[] ids = new int[root.length];
+            scratch.copyIds(ids);
+            checkpoints[node] = ids;
+        }
+        return true;
+    }
+
+    private void clear(int[] rootIds) {
+        Arrays.fill(checkpoints, 0, Math.max(count, 1), null);
+        count = 0;
+        current = ROOT;
+        addNode(NONE, 0);
+        checkpoints[ROOT] = rootIds;
+    }
+
+    private int childWithMove(int node, int move) {
+        for (int c = firstChild[node]; c != NONE; c = nextSibling[c]) {
+            if (moves[c] == move) return c;
+        }
+        return NONE;
+    }
+
+    private int addChild(int parent, int move) {
+        int node = addNode(parent, move);
+        nextSibling[node] = firstChild[parent];
+        firstChild[parent] = node;
+        return node;
+    }
+
+    private int addNode(int parent, int move) {
+        if (count == parents.length) {
+            int capacity = count * 2;
+            parents = Arrays.copyOf(parents, capacity);
+            moves = Arrays.copyOf(moves, capacity);
+            depths = Arrays.copyOf(depths, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            nextSibling = Arrays.copyOf(nextSibling, capacity);
+            preferred = Arrays.copyOf(preferred, capacity);
+            checkpoints = Arrays.copyOf(checkpoints, capacity);
+        }
+        int node = count++;
+        parents[node] = parent;
+        moves[node] = move;
+        depths[node] = parent == NONE ? 0 : depths[parent] + 1;
+        firstChild[node] = NONE;
+        nextSibling[node] = NONE;
+        preferred[node] = NONE;
+        checkpoints[node] = null;
+        return node;
+    }
+
+    private void checkNode(int node) {
+        if (node < 0 || node >= count) throw new IllegalArgumentException("No such node: " + node);
+    }
+}
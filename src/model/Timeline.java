@@ -0,0 +1,53 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * 走法树上的当前时间线：从根经过当前节点，再沿重做方向一直走到叶子，用于回放和拖动进度条。
+ * <p>
+ * nodes[k] 是第 k 步所在的节点，定位到第 k 步只需一次数组读取，
+ * 之后由 {@link MoveTree} 从最近的检查点重放，代价与检查点间隔相当而与 k 无关。
+ * 走子、撤销、重做时增量维护，只有跳到别的分支时才整条重建。
+ */
+public final class Timeline {
+    private int[] nodes = new int[256];
+    private int size; // 时间线上的节点数，0 表示需要重建
+
+    /** 树被清空或替换后调用，下次 {@link #sync} 时整条重建。 */
+    public void clear() {
+        size = 0;
+    }
+
+    /** 让时间线经过 tree 的当前节点。 */
+    public void sync(MoveTree tree) {
+        int node = tree.current();
+        int depth = tree.depth(node);
+        if (depth < size && nodes[depth] == node) return; // 撤销、重做或在线上跳转
+        if (depth == 0 || depth > size || nodes[depth - 1] != tree.parent(node)) {
+            // 跳到了别的分支：从当前节点向上重建
+            ensureCapacity(depth + 1);
+            for (int n = tree.parent(node); n != MoveTree.NONE; n = tree.parent(n)) nodes[tree.depth(n)] = n;
+        }
+        // 否则是从线上某一步走出了新的一步，其后换成新的分支
+        size = depth;
+        for (int n = node; n != MoveTree.NONE; n = tree.preferredChild(n)) {
+            ensureCapacity(size + 1);
+            nodes[size++] = n;
+        }
+    }
+
+    /** 时间线上的步数（不含起始局面）。 */
+    public int length() {
+        return size - 1;
+    }
+
+    /** 第 step 步所在的节点，0 为根。 */
+    public int nodeAt(int step) {
+        if (step < 0 || step >= size) throw new IllegalArgumentException("Step out of range: " + step);
+        return nodes[step];
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > nodes.length) nodes = Arrays.copyOf(nodes, Math.max(capacity, nodes.length * 2));
+    }
+}
@@ -41,6 +41,19 @@ public class UserManager {
 
     /** 保存游戏状态：包括步数和矩阵 **/
     public void saveState(String name, int steps, int[][] matrix) {
+        saveState(name, steps, matrix, null);
+    }
+
+    public void saveState(String name, int steps, int[][] matrix, MoveTree history) {
+        saveState(name, steps, matrix, history, null);
+    }
+
+    /**
+     * 保存游戏状态，并在矩阵之后空一行保存胜利条件和走法树（都可为 null）：
+     * 胜利条件一行 {@code goal,id,行,列,高,宽,...}，每条约束 5 个数；
+     * 走法树 {@code history,节点数,当前节点}，随后三行依次为根局面、各节点的父节点、各节点的走法。
+     **/
+    public void saveState(String name, int steps, int[][] matrix, MoveTree history, Goal goal) {
         Path userFile = Paths.get(USER_DIR, name + ".txt");
         if (!Files.exists(userFile)) return;
         try {
@@ -60,6 +73,9 @@ public class UserManager {
                     }
                     out.newLine();
                 }
+                if (goal != null || history != null) out.newLine();
+                if (goal != null) writeGoal(out, goal);
+                if (history != null) writeHistory(out, history);
             }
         } catch (IOException e) {
             e.printStackTrace();
@@ -83,6 +99,13 @@ public class UserManager {
             if (lines.isEmpty()) {
                 return new GameState(steps, null);
             }
+            String header = in.readLine();
+            Goal goal = null;
+            if (header != null && header.startsWith("goal,")) {
+                goal = readGoal(header);
+                header = in.readLine();
+            }
+            MoveTree history = readHistory(header, in);
             int rows = lines.size();
             int cols = lines.get(0).split(",").length;
             int[][] m = new int[rows][cols];
@@ -92,13 +115,89 @@ public class UserManager {
                     m[i][j] = Integer.parseInt(cells[j]);
                 }
             }
-            return new GameState(steps, m);
+            return new GameState(steps, m, history, goal);
         } catch (IOException e) {
             e.printStackTrace();
             return null;
         }
     }
 
+    private static void writeGoal(BufferedWriter out, Goal goal) throws IOException {
+        StringBuilder sb = new StringBuilder("goal");
+        for (int t = 0; t < goal.targetCount(); t++) {
+            sb.append(',').append(goal.targetId(t)).append(',').append(goal.targetRow(t))
+                    .append(',').append(goal.targetCol(t)).append(',').append(goal.targetHeight(t))
+                    .append(',').append(goal.targetWidth(t));
+        }
+        out.write(sb.toString());
+        out.newLine();
+    }
+
+    // 格式不对时返回 null，按经典规则处理
+    private static Goal readGoal(String line) {
+        try {
+            int[] values = readCsv(line.substring("goal,".length()));
+            if (values.length == 0 || values.length % 5 != 0) return null;
+            Goal goal = Goal.empty();
+            for (int i = 0; i < values.length; i += 5) {
+                goal = goal.require(values[i], values[i + 1], values[i + 2], values[i + 3], values[i + 4]);
+            }
+            return goal;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static void writeHistory(BufferedWriter out, MoveTree history) throws IOException {
+        int count = history.size();
+        out.write("history," + count + "," + history.current()); out.newLine();
+        writeCsv(out, history.checkpoint(MoveTree.ROOT));
+        int[] parents = new int[count];
+        int[] moves = new int[count];
+        parents[MoveTree.ROOT] = MoveTree.NONE;
+        for (int node = 1; node < count; node++) {
+            parents[node] = history.parent(node);
+            moves[node] = history.move(node);
+        }
+        writeCsv(out, parents);
+        writeCsv(out, moves);
+    }
+
+    private static void writeCsv(BufferedWriter out, int[] values) throws IOException {
+        StringBuilder sb = new StringBuilder(values.length * 4);
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) sb.append(',');
+            sb.append(values[i]);
+        }
+        out.write(sb.toString());
+        out.newLine();
+    }
+
+    // 读取矩阵之后的走法树，header 为这一段的首行；旧存档没有这一段，格式不对时也当作没有
+    private static MoveTree readHistory(String header, BufferedReader in) throws IOException {
+        if (header == null || !header.startsWith("history,")) return null;
+        try {
+            String[] h = header.split(",");
+            int count = Integer.parseInt(h[1]);
+            int current = Integer.parseInt(h[2]);
+            int[] rootIds = readCsv(in.readLine());
+            int[] parents = readCsv(in.readLine());
+            int[] moves = readCsv(in.readLine());
+            if (parents.length != count) return null;
+            return MoveTree.fromArrays(rootIds, parents, moves, current);
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    private static int[] readCsv(String line) {
+        if (line == null) throw new IllegalArgumentException("Missing line");
+        String[] cells = line.split(",");
+        int[] values = new int[cells.length];
+        for (int i = 0; i < cells.length; i++) values[i] = Integer.parseInt(cells[i]);
+        return values;
+    }
+
     private String hash(String pwd) {
         return Integer.toHexString(pwd.hashCode());
     }
@@ -107,9 +206,19 @@ public class UserManager {
     public static class GameState {
         public final int steps;
         public final int[][] matrix;
+        public final MoveTree history; // 没有保存走法树时为 null
+        public final Goal goal; // 没有保存胜利条件时为 null，按经典规则
         public GameState(int steps, int[][] matrix) {
+            this(steps, matrix, null);
+        }
+        public GameState(int steps, int[][] matrix, MoveTree history) {
+            this(steps, matrix, history, null);
+        }
+        public GameState(int steps, int[][] matrix, MoveTree history, Goal goal) {
             this.steps = steps;
             this.matrix = matrix;
+            this.history = history;
+            this.goal = goal;
         }
     }
 }
\ No newline at end of file
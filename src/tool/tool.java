@@ -1,5 +1,7 @@
 package tool;
 
+import model.Goal;
+
 import java.awt.*;
 import javax.swing.*;
 import javax.imageio.ImageIO;
@@ -37,7 +39,8 @@ public class tool {
 
             BACKGROUND = ImageIO.read(tool.class.getResource("/resources/background.png"));
 
-        } catch (IOException e) {
+        } catch (IOException | IllegalArgumentException e) {
+            // 缺少图片资源时（如离线工具、无界面环境）保持为 null，界面会退化为纯色方块
             e.printStackTrace();
         }
     }
@@ -150,6 +153,46 @@ public class tool {
     };
 
 
+    // 内置关卡，按关卡选择框中的顺序排列
+    public static final String[] LEVEL_NAMES = {
+            "横刀立马", "指挥若定", "将拥曹营", "齐头并进", "兵分三路",
+            "捷足先登", "左右布兵", "围而不坚", "插翅难飞", "守口如瓶",
+            "近在咫尺", "五将逼供",
+            "横刀立马·侧门", "横刀立马·关羽出关", "近在咫尺·关羽断后"
+    };
+
+    // 按名称取关卡矩阵，未知名称返回横刀立马
+    public static int[][] levelByName(String name) {
+        switch (name) {
+            case "横刀立马": return hengdaolima_1;
+            case "指挥若定": return zhihuiruoding_1;
+            case "将拥曹营": return jiangyongcaoying_1;
+            case "齐头并进": return qitoubingjin_1;
+            case "兵分三路": return bingfensanlu_1;
+            case "捷足先登": return jiezuxiandeng_1;
+            case "左右布兵": return zuoyoububing_1;
+            case "围而不坚": return weierbujian_1;
+            case "插翅难飞": return chachinanfei_2;
+            case "守口如瓶": return shoukouruping_2;
+            case "近在咫尺": return jinzaizhichi_2;
+            case "五将逼供": return wujiangbigong_3;
+            case "横刀立马·侧门": return hengdaolima_1;
+            case "横刀立马·关羽出关": return hengdaolima_1;
+            case "近在咫尺·关羽断后": return jinzaizhichi_2;
+            default: return hengdaolima_1;
+        }
+    }
+
+    // 按名称取关卡的胜利条件，未列出的关卡是曹操从底部出口离开
+    public static Goal goalByName(String name) {
+        switch (name) {
+            case "横刀立马·侧门": return Goal.empty().require(7, 1, 2, 2, 2); // 曹操从右侧出口离开
+            case "横刀立马·关羽出关": return Goal.empty().require(2, 4, 1, 1, 2); // 关羽到达底部出口
+            case "近在咫尺·关羽断后": return Goal.CLASSIC.require(2, 0, 1, 1, 2); // 曹操出关，同时关羽守在顶部
+            default: return Goal.CLASSIC;
+        }
+    }
+
     //public static final Image BACKGROUND=new ImageIcon("/resources/background.png").getImage();
 
     /*public static void main(String[] args) {
@@ -1,8 +1,10 @@
 package view.game;
 
 import controller.GameController;
+import controller.HintSearcher;
 import model.Direction;
 import model.MapModel;
+import model.MoveTree;
 import model.UserManager;
 import model.UserManager.GameState;
 import tool.tool;
@@ -13,6 +15,8 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 public class GameFrame extends JFrame {
     private GameController controller;
@@ -23,6 +27,8 @@ public class GameFrame extends JFrame {
     private JButton loadBtn;
     private JButton saveBtn;
     private JButton hintBtn;
+    private JSlider timelineSlider;
+    private boolean updatingTimeline; // 按模型刷新进度条时不触发跳转
     private final String currentUser;
     private final UserManager userManager;
     private MapModel mapModel;
@@ -59,12 +65,7 @@ public class GameFrame extends JFrame {
         });
 
         // 关卡选择
-        String[] levels = {
-                "横刀立马", "指挥若定", "将拥曹营", "齐头并进", "兵分三路",
-                "捷足先登", "左右布兵", "围而不坚", "插翅难飞", "守口如瓶",
-                "近在咫尺", "五将逼供"
-        };
-        levelSelector = new JComboBox<>(levels);
+        levelSelector = new JComboBox<>(tool.LEVEL_NAMES);
         levelSelector.setBounds(20, 20, 120, 30);
         add(levelSelector);
         levelSelector.addActionListener(e -> loadLevelByName((String) levelSelector.getSelectedItem()));
@@ -90,8 +91,7 @@ public class GameFrame extends JFrame {
                 150, 50);
         restartBtn.addActionListener(e -> {
             controller.clearUndoStack();
-            mapModel.setMatrix(originalMatrix);
-            totallyReset();
+            mapModel.setMatrix(originalMatrix); // 面板收到整盘替换通知后自行重建
             gamePanel.requestFocusInWindow();
         });
         add(restartBtn);
@@ -104,20 +104,49 @@ public class GameFrame extends JFrame {
         });
         add(undoBtn);
 
+        JButton redoBtn = FrameUtil.createButton(this, "Redo",
+                new Point(gamePanel.getPanelWidth() + 80, 400), 150, 50);
+        redoBtn.addActionListener(e -> {
+            controller.redo();
+            gamePanel.requestFocusInWindow();
+        });
+        add(redoBtn);
+
+        // 时间线进度条：拖动时跳到当前分支上的任意一步
+        timelineSlider = new JSlider(0, 0, 0);
+        timelineSlider.setBounds(gamePanel.getPanelWidth() + 80, 470, 150, 40);
+        timelineSlider.addChangeListener(e -> {
+            if (updatingTimeline) return;
+            controller.seek(timelineSlider.getValue());
+            if (!timelineSlider.getValueIsAdjusting()) gamePanel.requestFocusInWindow();
+        });
+        add(timelineSlider);
+
         hintBtn = FrameUtil.createButton(this,
                 "Hint",
                 new Point(gamePanel.getPanelWidth() + 80, 330), // 调整Y坐标避免重叠
                 150, 50);
         hintBtn.addActionListener(e -> {  // 正确的事件监听器位置
-            Direction hint = controller.getHint();
-            if (hint != null) {
-                showHintAnimation(hint);
-            } else {
-                JOptionPane.showMessageDialog(this,
-                        "No available hint!",
-                        "Hint",
-                        JOptionPane.INFORMATION_MESSAGE);
+            // 搜索在后台进行，结果回到事件线程再显示
+            CompletableFuture<Direction> request;
+            try {
+                request = controller.requestHint();
+            } catch (RuntimeException ex) {
+                showHintError(ex);
+                return;
             }
+            request.whenComplete((hint, error) -> SwingUtilities.invokeLater(() -> {
+                if (error != null) {
+                    showHintError(error);
+                } else if (hint != null) {
+                    showHintAnimation(hint);
+                } else {
+                    JOptionPane.showMessageDialog(this,
+                            "No available hint!",
+                            "Hint",
+                            JOptionPane.INFORMATION_MESSAGE);
+                }
+            }));
         });
         add(hintBtn);
 
@@ -131,9 +160,11 @@ public class GameFrame extends JFrame {
                 GameState gs = userManager.loadState(currentUser);
                 if (gs != null && gs.matrix != null) {
                     mapModel.setMatrix(gs.matrix);
-                    resetCurrentLevel();
+                    mapModel.setGoal(gs.goal);
                     currentSteps = gs.steps;
                     updateStepLabel();
+                    controller.restoreHistory(gs.history, gs.steps);
+                    refreshTimeline();
                 } else {
                     JOptionPane.showMessageDialog(this,
                             "No saved state found.",
@@ -151,7 +182,9 @@ public class GameFrame extends JFrame {
             saveBtn.addActionListener(e -> {
                 userManager.saveState(currentUser,
                         gamePanel.getSteps(),
-                        mapModel.getMatrix());
+                        mapModel.getMatrix(),
+                        controller.getHistory(),
+                        mapModel.getGoal());
                 JOptionPane.showMessageDialog(this,
                         "Game saved!",
                         "Info",
@@ -168,7 +201,9 @@ public class GameFrame extends JFrame {
                 if (userManager != null && currentUser != null) {
                     userManager.saveState(currentUser,
                             gamePanel.getSteps(),
-                            mapModel.getMatrix());
+                            mapModel.getMatrix(),
+                            controller.getHistory(),
+                            mapModel.getGoal());
                 }
                 super.windowClosing(e);
             }
@@ -182,37 +217,43 @@ public class GameFrame extends JFrame {
     private void initController() {
         controller = new GameController(gamePanel, mapModel);
         gamePanel.setController(controller);
+        // 走子、撤销、跳转、换关后刷新进度条：控制器更新完记录后直接回调，走子路径上不分配对象
+        controller.setHistoryListener(this::onHistoryChanged);
+        refreshTimeline();
     }
 
-    private void loadLevelByName(String name) {
-        int[][] matrix;
-        switch (name) {
-            case "横刀立马": matrix = tool.hengdaolima_1; break;
-            case "指挥若定": matrix = tool.zhihuiruoding_1; break;
-            case "将拥曹营": matrix = tool.jiangyongcaoying_1; break;
-            case "齐头并进": matrix = tool.qitoubingjin_1; break;
-            case "兵分三路": matrix = tool.bingfensanlu_1; break;
-            case "捷足先登": matrix = tool.jiezuxiandeng_1; break;
-            case "左右布兵": matrix = tool.zuoyoububing_1; break;
-            case "围而不坚": matrix = tool.weierbujian_1; break;
-            case "插翅难飞": matrix = tool.chachinanfei_2; break;
-            case "守口如瓶": matrix = tool.shoukouruping_2; break;
-            case "近在咫尺": matrix = tool.jinzaizhichi_2; break;
-            case "五将逼供": matrix = tool.wujiangbigong_3; break;
-            default: matrix = tool.hengdaolima_1;
+    // 界面操作都在事件线程上直接刷新；其他线程改动记录时才转到事件线程
+    private void onHistoryChanged() {
+        if (SwingUtilities.isEventDispatchThread()) refreshTimeline();
+        else SwingUtilities.invokeLater(this::refreshTimeline);
+    }
+
+    private void refreshTimeline() {
+        updatingTimeline = true;
+        try {
+            timelineSlider.setMaximum(controller.timelineLength());
+            timelineSlider.setValue(controller.timelinePosition());
+        } finally {
+            updatingTimeline = false;
         }
+    }
+
+    private void loadLevelByName(String name) {
+        int[][] matrix = tool.levelByName(name);
         mapModel.setMatrix(matrix);
+        mapModel.setGoal(tool.goalByName(name));
+        HintSearcher.forgetLastSearch(mapModel);
+        HintSearcher.preload(mapModel);
+        controller.clearUndoStack();
         currentSteps = 0;
-        totallyReset();
         updateStepLabel();
         originalMatrix=matrix;
     }
 
-    private void resetCurrentLevel() {
-        controller.restartGame();
-    }
-    private void totallyReset(){
-        controller.totallyRestart();
+    /** 登录时恢复存档中的走法树，棋盘和步数已由构造参数给出。 */
+    public void restoreHistory(MoveTree history) {
+        controller.restoreHistory(history, gamePanel.getSteps());
+        refreshTimeline();
     }
 
     private void updateStepLabel() {
@@ -227,4 +268,14 @@ public class GameFrame extends JFrame {
     private void showHintAnimation(Direction dir) {
         new ArrowOverlay(dir).startAnimation();
     }
+
+    // 搜索出错：记录异常并提示，不当作“没有提示”
+    private void showHintError(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        cause.printStackTrace();
+        JOptionPane.showMessageDialog(this,
+                "Hint search failed: " + cause.getMessage(),
+                "Hint",
+                JOptionPane.ERROR_MESSAGE);
+    }
 }
@@ -3,15 +3,18 @@ package view.game;
 import controller.GameController;
 import model.Direction;
 import model.MapModel;
+import model.ModelListener;
 import tool.tool;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class GamePanel extends ListenerPanel {
-    private List<BoxComponent> boxes;
+    private Map<Integer, BoxComponent> boxes; // 按唯一 ID 索引
     private MapModel model;
     private GameController controller;
     private JLabel stepLabel;
@@ -21,10 +24,12 @@ public class GamePanel extends ListenerPanel {
     private boolean victory = false;
     private BufferedImage backgroundImage;
     private int bigBlockUniqueId = 1000; // 大块唯一ID生成器
+    private boolean assigningIds; // initialGame 写回唯一 ID 时不响应自己引起的通知
+    private int movedInBatch;
 
 
     public GamePanel(MapModel model) {
-        boxes = new ArrayList<>();
+        boxes = new HashMap<>();
         this.setVisible(true);
         this.setFocusable(true);
         this.setLayout(null);
@@ -34,29 +39,85 @@ public class GamePanel extends ListenerPanel {
         this.selectedBox = null;
         backgroundImage = tool.BACKGROUND;
         initialGame();
+        model.addListener(modelListener);
     }
 
-    public void initialGame() {
-        //this.steps = 0;
-        int[][] map = new int[model.getHeight()][model.getWidth()];
-        for (int i = 0; i < map.length; i++) {
-            for (int j = 0; j < map[0].length; j++) {
-                map[i][j] = model.getId(i, j);
+    // 模型变化只挪动移动过的方块、重绘脏格子；无法对应到方块时整盘重建
+    private final ModelListener modelListener = new ModelListener() {
+        @Override
+        public void batchStarted() {
+            movedInBatch = 0;
+        }
+
+        // 在事件线程上（玩家操作）直接更新，其他线程的修改才排队，避免每步创建任务
+        @Override
+        public void pieceMoved(int uniqueId, int fromRow, int fromCol, int toRow, int toCol) {
+            movedInBatch++;
+            if (SwingUtilities.isEventDispatchThread()) moveBox(uniqueId, toRow, toCol);
+            else SwingUtilities.invokeLater(() -> moveBox(uniqueId, toRow, toCol));
+        }
+
+        @Override
+        public void batchFinished(BitSet dirtyCells) {
+            if (assigningIds) return;
+            if (movedInBatch == 0) {
+                onEventThread(GamePanel.this::reset);
+            } else if (SwingUtilities.isEventDispatchThread()) {
+                repaintCells(dirtyCells);
+            } else {
+                // 位图只在回调期间有效，排队前先复制
+                BitSet dirty = (BitSet) dirtyCells.clone();
+                SwingUtilities.invokeLater(() -> repaintCells(dirty));
             }
         }
+
+        @Override
+        public void boardReplaced() {
+            onEventThread(GamePanel.this::reset);
+        }
+    };
+
+    private static void onEventThread(Runnable action) {
+        if (SwingUtilities.isEventDispatchThread()) action.run();
+        else SwingUtilities.invokeLater(action);
+    }
+
+    private void moveBox(int uniqueId, int row, int col) {
+        BoxComponent box = boxes.get(uniqueId);
+        if (box == null) {
+            reset();
+            return;
+        }
+        box.setRow(row);
+        box.setCol(col);
+        box.setLocation(col * GRID_SIZE + (int)(0.7 * GRID_SIZE), row * GRID_SIZE + (int)(1.5 * GRID_SIZE));
+    }
+
+    private void repaintCells(BitSet dirty) {
+        int width = model.getWidth();
+        for (int cell = dirty.nextSetBit(0); cell >= 0; cell = dirty.nextSetBit(cell + 1)) {
+            repaint((cell % width) * GRID_SIZE + (int)(0.7 * GRID_SIZE),
+                    (cell / width) * GRID_SIZE + (int)(1.5 * GRID_SIZE), GRID_SIZE, GRID_SIZE);
+        }
+    }
+
+    public void initialGame() {
+        //this.steps = 0;
+        // 按模型的方块表逐块建立组件，形状（包括横放的武将）直接取自方块表
+        MapModel.Snapshot board = model.snapshot();
+        int[] uniqueIds = new int[board.pieceCount()];
         int soldierId = 1;
 
-        for (int i = 0; i < map.length; i++) {
-            for (int j = 0; j < map[0].length; j++) {
-                BoxComponent box = null;
-                BufferedImage characterImage = null;
-                Color boxColor = Color.GRAY; // 默认颜色
+        for (int p = 0; p < board.pieceCount(); p++) {
+            int i = board.pieceRow(p);
+            int j = board.pieceCol(p);
+            BufferedImage characterImage = null;
+            Color boxColor = Color.GRAY; // 默认颜色
+            int uniqueId;
 
-                if (map[i][j] == 1) {  // 士兵块
+            switch (board.pieceId(p)) {
+                case 1: // 士兵块
                     switch (soldierId) {
-                        case 1:
-                            characterImage = tool.SOLDIER1_IMAGE;
-                            break;
                         case 2:
                             characterImage = tool.SOLDIER2_IMAGE;
                             break;
@@ -70,77 +131,68 @@ public class GamePanel extends ListenerPanel {
                             characterImage = tool.SOLDIER1_IMAGE;
                     }
                     boxColor = Color.ORANGE;
-                    box = new BoxComponent(boxColor, i, j, characterImage);
-                    box.setSize(GRID_SIZE, GRID_SIZE);
-                    box.setUniqueId(soldierId);
-                    model.setUniqueId(i, j, soldierId++);
-                    map[i][j] = 0;
-
-                } else if (map[i][j] == 2) {  // 关羽（横向2x1）
+                    uniqueId = soldierId++;
+                    break;
+                case 2: // 关羽
                     characterImage = tool.GUANYU_IMAGE;
                     boxColor = Color.PINK;
-                    box = new BoxComponent(boxColor, i, j, characterImage);
-                    box.setSize(GRID_SIZE*2, GRID_SIZE);
-                    int uniqueId = bigBlockUniqueId++;
-                    box.setUniqueId(uniqueId);
-                    model.setUniqueId(i, j, uniqueId);
-                    model.setUniqueId(i, j+1, uniqueId);
-                    map[i][j] = 0;
-                    map[i][j + 1] = 0;
-
-                } else if (map[i][j] >= 3 && map[i][j] <= 6) {  // 纵向1x2块
-                    switch (map[i][j]) {
-                        case 3:
-                            characterImage = tool.MACHAO_IMAGE;
-                            boxColor = Color.YELLOW;
-                            break;
-                        case 4:
-                            characterImage = tool.HUANGZHONG_IMAGE;
-                            boxColor = Color.BLUE;
-                            break;
-                        case 5:
-                            characterImage = tool.ZHAOYUN_IMAGE;
-                            boxColor = Color.RED;
-                            break;
-                        case 6:
-                            characterImage = tool.ZHANGFEI_IMAGE;
-                            boxColor = Color.CYAN;
-                            break;
-                    }
-                    box = new BoxComponent(boxColor, i, j, characterImage);
-                    box.setSize(GRID_SIZE, GRID_SIZE * 2);
-                    int uniqueId = bigBlockUniqueId++;
-                    box.setUniqueId(uniqueId);
-                    model.setUniqueId(i, j, uniqueId);
-                    model.setUniqueId(i + 1, j, uniqueId);
-                    map[i][j] = 0;
-                    map[i + 1][j] = 0;
-
-                } else if (map[i][j] == 7) {  // 曹操块（2x2）
+                    uniqueId = bigBlockUniqueId++;
+                    break;
+                case 3:
+                    characterImage = tool.MACHAO_IMAGE;
+                    boxColor = Color.YELLOW;
+                    uniqueId = bigBlockUniqueId++;
+                    break;
+                case 4:
+                    characterImage = tool.HUANGZHONG_IMAGE;
+                    boxColor = Color.BLUE;
+                    uniqueId = bigBlockUniqueId++;
+                    break;
+                case 5:
+                    characterImage = tool.ZHAOYUN_IMAGE;
+                    boxColor = Color.RED;
+                    uniqueId = bigBlockUniqueId++;
+                    break;
+                case 6:
+                    characterImage = tool.ZHANGFEI_IMAGE;
+                    boxColor = Color.CYAN;
+                    uniqueId = bigBlockUniqueId++;
+                    break;
+                case 7: // 曹操块（2x2）
                     characterImage = tool.CAOCAO_IMAGE;
                     boxColor = Color.GREEN;
-                    box = new BoxComponent(boxColor, i, j, characterImage);
-                    box.setSize(GRID_SIZE * 2, GRID_SIZE * 2);
-                    int uniqueId = bigBlockUniqueId++;
-                    box.setUniqueId(uniqueId);
-                    model.setUniqueId(i, j, uniqueId);
-                    model.setUniqueId(i, j + 1, uniqueId);
-                    model.setUniqueId(i + 1, j, uniqueId);
-                    model.setUniqueId(i + 1, j + 1, uniqueId);
-                    map[i][j] = 0;
-                    map[i + 1][j] = 0;
-                    map[i][j + 1] = 0;
-                    map[i + 1][j + 1] = 0;
-                }
+                    uniqueId = bigBlockUniqueId++;
+                    break;
+                default:
+                    uniqueId = bigBlockUniqueId++;
+            }
+            uniqueIds[p] = uniqueId;
+
+            BoxComponent box = new BoxComponent(boxColor, i, j, characterImage);
+            box.setSize(GRID_SIZE * board.pieceWidth(p), GRID_SIZE * board.pieceHeight(p));
+            box.setUniqueId(uniqueId);
+            int boxX = j * GRID_SIZE + (int)(0.7*GRID_SIZE);
+            int boxY = i * GRID_SIZE + (int)(1.5*GRID_SIZE);
+            box.setLocation(boxX, boxY);
+            boxes.put(uniqueId, box);
+            this.add(box);
+        }
 
-                if (box != null) {
-                    int boxX = j * GRID_SIZE + (int)(0.7*GRID_SIZE);
-                    int boxY = i * GRID_SIZE + (int)(1.5*GRID_SIZE);
-                    box.setLocation(boxX, boxY);
-                    boxes.add(box);
-                    this.add(box);
+        // 唯一 ID 一次写回模型
+        assigningIds = true;
+        try {
+            model.edit(editor -> {
+                for (int p = 0; p < board.pieceCount(); p++) {
+                    for (int r = 0; r < board.pieceHeight(p); r++) {
+                        for (int c = 0; c < board.pieceWidth(p); c++) {
+                            editor.setUniqueId(board.pieceRow(p) + r, board.pieceCol(p) + c, uniqueIds[p]);
+                        }
+                    }
                 }
-            }
+                return true;
+            });
+        } finally {
+            assigningIds = false;
         }
         this.repaint();
     }
@@ -176,55 +228,28 @@ public class GamePanel extends ListenerPanel {
             stepLabel.setText(String.format("Step: %d", this.steps));
         }
 
-        // 2. 更新方块的模型坐标
-        if (selectedBox != null) {
-            selectedBox.setRow(newRow);
-            selectedBox.setCol(newCol);
-        }
+        // 2. 方块的坐标和位置已由模型的移动通知更新（见 modelListener）
 
-        // 3. 计算新位置的实际像素坐标
-        int newX = newCol * GRID_SIZE + (int)(0.7 * GRID_SIZE);
-        int newY = newRow * GRID_SIZE + (int)(1.5 * GRID_SIZE);
-
-        // 4. 设置方块的新位置（需在EDT线程操作）
-        SwingUtilities.invokeLater(() -> {
-            if (selectedBox != null) {
-                selectedBox.setLocation(newX, newY);
-                selectedBox.repaint();
-            }
-            this.repaint(); // 强制重绘整个面板
-        });
-
-        // 5. 解除选中状态（可选，根据需求）
+        // 3. 解除选中状态（可选，根据需求）
         // selectedBox.setSelected(false);
         // selectedBox = null;
 
-        // 6. 检查胜利条件
+        // 4. 检查胜利条件
         checkVictory();
     }
 
     private void checkVictory() {
         if (victory) return;
 
-        for (BoxComponent box : boxes) {
-            // 检查是否为曹操块（2x2）
-            if (box.getWidth() == GRID_SIZE * 2 && box.getHeight() == GRID_SIZE * 2) {
-                // 确保不会越界
-                if (box.getRow() + 1 >= model.getHeight() || box.getCol() + 1 >= model.getWidth()) {
-                    continue;
-                }
-                // 检查是否覆盖目标区域（row=3, col=1）
-                if (box.getRow() == 3 && box.getCol() == 1) {
-                    victory = true;
-                    JOptionPane.showMessageDialog(
-                            this,
-                            String.format("🎉 Victory! Steps: %d", steps),
-                            "Congratulations",
-                            JOptionPane.INFORMATION_MESSAGE
-                    );
-                    break;
-                }
-            }
+        // 胜利条件由关卡声明（见 MapModel.getGoal）
+        if (model.isGoalReached()) {
+            victory = true;
+            JOptionPane.showMessageDialog(
+                    this,
+                    String.format("🎉 Victory! Steps: %d", steps),
+                    "Congratulations",
+                    JOptionPane.INFORMATION_MESSAGE
+            );
         }
     }
 
@@ -340,20 +365,16 @@ public class GamePanel extends ListenerPanel {
         repaint();
     }
 
+    // 格子上的唯一 ID 直接对应组件
     private BoxComponent getBoxAt(int row, int col) {
-        for (BoxComponent box : boxes) {
-            // 根据方块的坐标和尺寸进行判断
-            if (box.getRow() <= row && row < box.getRow() + box.getHeight() / GRID_SIZE &&
-                    box.getCol() <= col && col < box.getCol() + box.getWidth() / GRID_SIZE) {
-                return box;
-            }
-        }
-        return null;
+        return boxes.get(model.getUniqueId(row, col));
     }
 
     public void setSteps(int steps) {
         this.steps = steps;
-        stepLabel.setText("Step: " + steps);
+        if (stepLabel != null) {
+            stepLabel.setText("Step: " + steps);
+        }
     }
 
     private BufferedImage getSoldierImage(int uniqueId) {
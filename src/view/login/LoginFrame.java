@@ -51,7 +51,9 @@ public class LoginFrame extends JFrame {
                         {1,1,1,1}
                 };
                 MapModel map = new MapModel(matrix);
+                if (state != null) map.setGoal(state.goal);
                 GameFrame gf = new GameFrame(600, 450, map, user, userManager, state != null ? state.steps : 0);
+                if (state != null && state.history != null) gf.restoreHistory(state.history);
                 gf.setVisible(true);
                 this.setVisible(false);
             } else {